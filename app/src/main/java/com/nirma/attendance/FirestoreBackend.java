@@ -0,0 +1,93 @@
+package com.nirma.attendance;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link RosterSync.Backend} over Cloud Firestore: one document per student at
+ * sessions/{sessionKey}/checkIns/{rollNo}, so writing a batch twice changes nothing. Signs in
+ * anonymously if nobody is signed in. Blocks, so it only runs on RosterSync's worker.
+ * For testing, point the instance at the emulator with {@link FirebaseFirestore#useEmulator}.
+ */
+public final class FirestoreBackend implements RosterSync.Backend {
+
+    private static final long TIMEOUT_SECONDS = 20;
+
+    private final FirebaseFirestore db;
+    private final FirebaseAuth auth;
+
+    public FirestoreBackend(FirebaseFirestore db, FirebaseAuth auth) {
+        this.db = db;
+        this.auth = auth;
+    }
+
+    @Override
+    public void write(String sessionKey, List<CheckIn> batch) throws IOException {
+        try {
+            if (auth.getCurrentUser() == null) {
+                Tasks.await(auth.signInAnonymously(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            CollectionReference checkIns = db.collection("sessions").document(sessionKey).collection("checkIns");
+            WriteBatch write = db.batch();
+            for (CheckIn checkIn : batch) {
+                HashMap<String, Object> doc = new HashMap<>();
+                doc.put("rollNo", checkIn.rollNo);
+                doc.put("device", CheckIn.deviceKey(checkIn.deviceHash));
+                doc.put("checkInId", checkIn.nonce);
+                doc.put("markedAt", new Timestamp(new Date(checkIn.timestampMillis)));
+                write.set(checkIns.document(documentId(checkIn.rollNo)), doc, SetOptions.merge());
+            }
+            // Offline, Firestore keeps the batch itself; this only decides how long we wait to hear
+            Tasks.await(write.commit(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof FirebaseFirestoreException
+                    && ((FirebaseFirestoreException) cause).getCode() == FirebaseFirestoreException.Code.RESOURCE_EXHAUSTED) {
+                throw new RosterSync.QuotaExceededException(cause.getMessage(), cause);
+            }
+            throw new IOException(cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Firestore did not confirm the write in time", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * A roll number as a document id, which can't contain '/', be "." or "..", or look like
+     * "__x__". Percent-escapes '%', '/' and a leading '.' or '_', so two roll numbers never
+     * share a document and the id still reads as the roll number.
+     */
+    static String documentId(String rollNo) {
+        StringBuilder id = new StringBuilder(rollNo.length() + 8);
+        for (int i = 0; i < rollNo.length(); i++) {
+            char c = rollNo.charAt(i);
+            if (c == '%') {
+                id.append("%25");
+            } else if (c == '/') {
+                id.append("%2F");
+            } else if (i == 0 && c == '.') {
+                id.append("%2E");
+            } else if (i == 0 && c == '_') {
+                id.append("%5F");
+            } else {
+                id.append(c);
+            }
+        }
+        return id.toString();
+    }
+}
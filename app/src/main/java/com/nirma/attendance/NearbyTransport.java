@@ -0,0 +1,83 @@
+package com.nirma.attendance;
+
+import androidx.annotation.NonNull;
+import com.google.android.gms.nearby.connection.ConnectionInfo;
+import com.google.android.gms.nearby.connection.ConnectionLifecycleCallback;
+import com.google.android.gms.nearby.connection.ConnectionResolution;
+import com.google.android.gms.nearby.connection.ConnectionsClient;
+import com.google.android.gms.nearby.connection.Payload;
+import com.google.android.gms.nearby.connection.PayloadCallback;
+import com.google.android.gms.nearby.connection.PayloadTransferUpdate;
+
+/** {@link Transport} over Nearby Connections. Advertise with {@link #lifecycleCallback()}. */
+public final class NearbyTransport implements Transport {
+
+    private final ConnectionsClient connections;
+    private Transport.Listener listener;
+
+    public NearbyTransport(ConnectionsClient connections) {
+        this.connections = connections;
+    }
+
+    public void setListener(Transport.Listener listener) {
+        this.listener = listener;
+    }
+
+    public ConnectionLifecycleCallback lifecycleCallback() {
+        return lifecycleCallback;
+    }
+
+    @Override
+    public void accept(String endpointId) {
+        connections.acceptConnection(endpointId, payloadCallback);
+    }
+
+    @Override
+    public void reject(String endpointId) {
+        connections.rejectConnection(endpointId);
+    }
+
+    @Override
+    public void disconnect(String endpointId) {
+        connections.disconnectFromEndpoint(endpointId);
+    }
+
+    @Override
+    public long send(String endpointId, byte[] bytes) {
+        Payload payload = Payload.fromBytes(bytes);
+        connections.sendPayload(endpointId, payload);
+        return payload.getId();
+    }
+
+    private final ConnectionLifecycleCallback lifecycleCallback = new ConnectionLifecycleCallback() {
+        @Override
+        public void onConnectionInitiated(@NonNull String endpointId, @NonNull ConnectionInfo info) {
+            listener.onConnectionRequested(endpointId, info.getEndpointInfo());
+        }
+
+        @Override
+        public void onConnectionResult(@NonNull String endpointId, @NonNull ConnectionResolution result) {
+            listener.onConnectionResult(endpointId, result.getStatus().isSuccess());
+        }
+
+        @Override
+        public void onDisconnected(@NonNull String endpointId) {
+            listener.onDisconnected(endpointId);
+        }
+    };
+
+    private final PayloadCallback payloadCallback = new PayloadCallback() {
+        @Override
+        public void onPayloadReceived(@NonNull String endpointId, @NonNull Payload payload) {
+            byte[] data = payload.asBytes();
+            if (data != null) listener.onPayload(endpointId, data);
+        }
+
+        @Override
+        public void onPayloadTransferUpdate(@NonNull String endpointId, @NonNull PayloadTransferUpdate update) {
+            if (update.getStatus() == PayloadTransferUpdate.Status.SUCCESS) {
+                listener.onPayloadDelivered(endpointId, update.getPayloadId());
+            }
+        }
+    };
+}
@@ -2,55 +2,153 @@ package com.nirma.attendance;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.ClipData;
+import android.content.ComponentName;
+import android.content.ContentResolver;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.provider.Settings;
-import android.widget.ArrayAdapter;
+import android.os.IBinder;
+import android.provider.DocumentsContract;
 import android.widget.Button;
-import android.widget.ListView;
+import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
-import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
-import com.google.android.gms.nearby.Nearby;
-import com.google.android.gms.nearby.connection.*;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
+/**
+ * The professor's screen. The session itself lives in {@link SessionService}; this binds to
+ * it, shows its roster and status, and handles the buttons and exports. It can be recreated
+ * at any time (rotation, dark mode) without losing check-ins.
+ */
 public class ProfessorActivity extends AppCompatActivity {
 
-    private static final String SERVICE_ID = "com.nirma.attendance";
+    // Attendance below this over the semester puts a student on the defaulter list
+    private static final double DEFAULTER_PERCENT = 75;
+    // What a file picker was opened for, kept across a recreation while it's open
+    private static final String STATE_PENDING_FORMAT = "pendingFormat";
+    private static final String STATE_PENDING_SOURCES = "pendingSources";
+
     private Button btnStart, btnStop, btnExport; // Defined correctly at top
+    private Button btnImportList, btnAbsentees;
     private TextView statusText;
-    private ListView studentListView;
-    private ArrayList<String> studentList;
-    private ArrayAdapter<String> adapter;
+    private CheckBox cbHubVerify, cbFastCheckIn;
+    private EditText etCourseCode;
+    private RecyclerView studentListView;
+    private RosterAdapter adapter;
+    private RosterExporter.Task exportTask; // held by the service, so it survives a recreation
+    private ExportFormat pendingFormat = ExportFormat.CSV;
+    private SessionService session; // null until bound
+    // Picked for the semester report: file:// for saved sessions, content:// for exported CSVs
+    private ArrayList<Uri> pendingSources;
+    private int deferredRequest; // a picker result that came back before the service was bound
+    private Intent deferredData;
+
+    private final SessionService.Observer observer = new SessionService.Observer() {
+        @Override
+        public void onRosterChanged() {
+            if (adapter != null) adapter.onRosterChanged();
+        }
+
+        @Override
+        public void onStatusChanged(String status, boolean broadcasting) {
+            if (exportTask != null && !exportTask.isDone()) return; // export progress owns the line
+            statusText.setText(status);
+            cbHubVerify.setEnabled(!broadcasting);
+            cbFastCheckIn.setEnabled(!broadcasting);
+            etCourseCode.setEnabled(!broadcasting);
+        }
+    };
+
+    private final SessionService.ReportListener reportListener = new SessionService.ReportListener() {
+        @Override
+        public void onReportSaved(SemesterAggregator.Report report) {
+            statusText.setText("Status: Semester report saved · " + report);
+            showDefaulters(report);
+        }
+
+        @Override
+        public void onReportFailed(Exception error) {
+            statusText.setText("Status: Semester report failed");
+            Toast.makeText(ProfessorActivity.this, "Error building report: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            session = ((SessionService.LocalBinder) binder).getService();
+            adapter = new RosterAdapter(session.getRoster(), session.getFlaggedRolls());
+            studentListView.setAdapter(adapter);
+            if (session.getCourseCode() != null) etCourseCode.setText(session.getCourseCode());
+            session.addObserver(observer);
+            session.setReportListener(reportListener);
+            exportTask = session.getExport();
+            if (exportTask != null) {
+                // Recreated mid-export: take it over, or hear how it ended while nobody listened
+                if (!exportTask.isDone()) btnExport.setText("Cancel Export");
+                exportTask.setListener(exportListener(session.getExportTarget()));
+            }
+            if (deferredData != null) {
+                onPicked(deferredRequest, deferredData);
+                deferredData = null;
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            session = null; // same process, so only if it crashed
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_professor);
+        if (savedInstanceState != null) {
+            pendingFormat = ExportFormat.valueOf(savedInstanceState.getString(STATE_PENDING_FORMAT, pendingFormat.name()));
+            pendingSources = savedInstanceState.getParcelableArrayList(STATE_PENDING_SOURCES);
+        }
 
         btnStart = findViewById(R.id.btnStart);
         btnStop = findViewById(R.id.btnStop);
         btnExport = findViewById(R.id.btnExport); // Initialized here
+        btnImportList = findViewById(R.id.btnImportList);
+        btnAbsentees = findViewById(R.id.btnAbsentees);
         statusText = findViewById(R.id.statusText);
+        cbHubVerify = findViewById(R.id.cbHubVerify);
+        cbFastCheckIn = findViewById(R.id.cbFastCheckIn);
+        etCourseCode = findViewById(R.id.etCourseCode);
         studentListView = findViewById(R.id.studentListView);
+        studentListView.setLayoutManager(new LinearLayoutManager(this));
 
-        studentList = new ArrayList<>();
-        adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, studentList);
-        studentListView.setAdapter(adapter);
+        // Started as well as bound, so the session outlives this screen
+        Intent service = new Intent(this, SessionService.class);
+        startService(service);
+        bindService(service, connection, BIND_AUTO_CREATE);
 
         btnStart.setOnClickListener(v -> {
+            if (session == null) return;
+            if (!SessionDescriptor.isValidCourse(etCourseCode.getText().toString())) {
+                etCourseCode.setError("Enter the course code students will type (max "
+                        + SessionDescriptor.MAX_COURSE_BYTES + " characters)");
+                return;
+            }
             if (hasPermissions()) {
                 checkLocationEnabled();
             } else {
@@ -59,67 +157,354 @@ public class ProfessorActivity extends AppCompatActivity {
         });
 
         btnStop.setOnClickListener(v -> {
-            Nearby.getConnectionsClient(this).stopAdvertising();
-            Nearby.getConnectionsClient(this).stopAllEndpoints();
-            statusText.setText("Status: Stopped");
+            if (session == null) return;
+            session.stopSession();
             Toast.makeText(this, "Session Stopped", Toast.LENGTH_SHORT).show();
         });
 
+        btnImportList.setOnClickListener(v -> openClassList());
+
+        btnAbsentees.setOnClickListener(v -> {
+            if (session == null) return;
+            if (session.getEnrolment() == null) {
+                Toast.makeText(this, "Import the class list first", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            showAbsentees(session.getEnrolment());
+        });
+
         btnExport.setOnClickListener(v -> {
-            if (studentList.isEmpty()) {
-                Toast.makeText(this, "No students to export!", Toast.LENGTH_SHORT).show();
+            if (exportTask != null && !exportTask.isDone()) {
+                // Second tap while an export is running cancels it
+                exportTask.cancel();
                 return;
             }
-            createFile();
+            if (session == null) return;
+            chooseExportFormat();
         });
     }
 
-    // --- CSV EXPORT LOGIC ---
-    private void createFile() {
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_PENDING_FORMAT, pendingFormat.name());
+        if (pendingSources != null) outState.putParcelableArrayList(STATE_PENDING_SOURCES, pendingSources);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (exportTask != null) {
+            if (isFinishing()) {
+                exportTask.cancel(); // this listener still deletes the partial file
+            } else {
+                exportTask.setListener(null); // a rotation: the next screen takes it over
+            }
+        }
+        if (session != null) {
+            session.removeObserver(observer);
+            session.setReportListener(null); // the report carries on; the next screen hears how it went
+            // Leaving for good with nothing on air closes the session; a rotation doesn't
+            if (isFinishing() && !session.isBroadcasting()) session.finish();
+        }
+        unbindService(connection);
+    }
+
+    private void startSession() {
+        if (session == null) return;
+        session.startSession(etCourseCode.getText().toString(), cbHubVerify.isChecked(), cbFastCheckIn.isChecked());
+    }
+
+    // --- CLASS LIST ---
+    private void openClassList() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+        // Spreadsheet apps and file managers label CSV files inconsistently
+        intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{"text/csv", "text/comma-separated-values", "text/plain"});
+        startActivityForResult(intent, 4003);
+    }
+
+    private void showAbsentees(EnrolmentIndex enrolment) {
+        int[] slots = enrolment.absentSlots();
+        if (slots.length == 0) {
+            Toast.makeText(this, "Everyone is present", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String[] rows = new String[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            String name = enrolment.nameAt(slots[i]);
+            rows[i] = enrolment.rollAt(slots[i]) + (name.isEmpty() ? "" : "  " + name);
+        }
+        new android.app.AlertDialog.Builder(this)
+                .setTitle("Absent: " + slots.length + " of " + enrolment.size())
+                .setItems(rows, null)
+                .setPositiveButton("OK", null)
+                .show();
+    }
+
+    // --- EXPORT LOGIC ---
+    private void chooseExportFormat() {
+        ExportFormat[] formats = ExportFormat.values();
+        String[] labels = new String[formats.length + 2];
+        for (int i = 0; i < formats.length; i++) labels[i] = formats[i].label;
+        labels[formats.length] = "Session telemetry (CSV)";
+        labels[formats.length + 1] = "Semester report (CSV)";
+
+        new android.app.AlertDialog.Builder(this)
+                .setTitle("Export as")
+                .setItems(labels, (dialog, which) -> {
+                    if (which < formats.length) {
+                        if (session.getRoster().isEmpty()) {
+                            Toast.makeText(this, "No students to export!", Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        createFile(formats[which]);
+                    } else if (which == formats.length) {
+                        createTelemetryFile();
+                    } else if (session.isReportRunning()) {
+                        Toast.makeText(this, "A semester report is already being built", Toast.LENGTH_SHORT).show();
+                    } else {
+                        chooseSemesterSources();
+                    }
+                })
+                .show();
+    }
+
+    // --- SEMESTER REPORT ---
+    private void chooseSemesterSources() {
+        new android.app.AlertDialog.Builder(this)
+                .setTitle("Semester report from")
+                .setItems(new String[]{"Sessions saved on this phone", "Exported CSV files..."}, (dialog, which) -> {
+                    if (which == 0) {
+                        useSavedSessions();
+                    } else {
+                        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                        intent.addCategory(Intent.CATEGORY_OPENABLE);
+                        intent.setType("*/*");
+                        intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{"text/csv", "text/comma-separated-values", "text/plain"});
+                        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+                        startActivityForResult(intent, 4004);
+                    }
+                })
+                .show();
+    }
+
+    private void useSavedSessions() {
+        // Finished sessions are archived by SessionService; the live journal is left out
+        File[] journals = new File(getFilesDir(), "sessions")
+                .listFiles((dir, name) -> name.startsWith("Attendance_") && name.endsWith(".journal"));
+        if (journals == null || journals.length == 0) {
+            Toast.makeText(this, "No finished sessions on this phone yet", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Arrays.sort(journals);
+        pendingSources = new ArrayList<>();
+        for (File journal : journals) pendingSources.add(Uri.fromFile(journal));
+        createSemesterReportFile();
+    }
+
+    private void usePickedFiles(Intent data) {
+        ArrayList<Uri> uris = new ArrayList<>();
+        ClipData clip = data.getClipData();
+        if (clip != null) {
+            for (int i = 0; i < clip.getItemCount(); i++) uris.add(clip.getItemAt(i).getUri());
+        } else if (data.getData() != null) {
+            uris.add(data.getData());
+        }
+        if (uris.isEmpty()) return;
+        pendingSources = uris;
+        createSemesterReportFile();
+    }
+
+    private void createSemesterReportFile() {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("text/csv");
+        String timeStamp = new SimpleDateFormat("yyyyMMdd", Locale.getDefault()).format(new Date());
+        intent.putExtra(Intent.EXTRA_TITLE, "Semester_" + timeStamp + ".csv");
+        startActivityForResult(intent, 4005);
+    }
+
+    private void startSemesterReport(Uri target) {
+        if (pendingSources == null) {
+            // e.g. the process was killed between picking the sessions and the report file
+            Toast.makeText(this, "Please try again", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // Not this screen's resolver: the report may outlive it
+        ContentResolver resolver = getApplicationContext().getContentResolver();
+        List<SemesterAggregator.Source> sources = new ArrayList<>(pendingSources.size());
+        for (Uri uri : pendingSources) {
+            if ("file".equals(uri.getScheme())) {
+                sources.add(SemesterAggregator.journal(new File(uri.getPath())));
+            } else {
+                String name = uri.getLastPathSegment() != null ? uri.getLastPathSegment() : uri.toString();
+                sources.add(SemesterAggregator.csv(name, () -> resolver.openInputStream(uri)));
+            }
+        }
+        pendingSources = null;
+        if (!session.startSemesterReport(sources, target, DEFAULTER_PERCENT)) {
+            // Picked while another was still running; its empty file would be left behind
+            discard(target);
+            Toast.makeText(this, "A semester report is already being built", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        statusText.setText("Status: Reading " + sources.size() + " sessions...");
+    }
+
+    private void showDefaulters(SemesterAggregator.Report report) {
+        ArrayList<String> rows = new ArrayList<>();
+        for (int i = 0; i < report.students(); i++) {
+            double percent = report.percentAt(i);
+            if (percent < DEFAULTER_PERCENT) {
+                rows.add(String.format(Locale.getDefault(), "%s  %d/%d  (%.0f%%)",
+                        report.rollAt(i), report.attendedAt(i), report.sessions, percent));
+            }
+        }
+        new android.app.AlertDialog.Builder(this)
+                .setTitle(rows.size() + " below " + (int) DEFAULTER_PERCENT + "% over " + report.sessions + " sessions")
+                .setItems(rows.toArray(new String[0]), null)
+                .setPositiveButton("OK", null)
+                .show();
+    }
+
+    private void createTelemetryFile() {
         Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
         intent.addCategory(Intent.CATEGORY_OPENABLE);
         intent.setType("text/csv");
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmm", Locale.getDefault()).format(new Date());
-        intent.putExtra(Intent.EXTRA_TITLE, "Attendance_" + timeStamp + ".csv");
-        startActivityForResult(intent, 4001);
+        intent.putExtra(Intent.EXTRA_TITLE, "Telemetry_" + timeStamp + ".csv");
+        startActivityForResult(intent, 4002);
     }
 
-    private void writeCSV(Uri uri) {
-        try {
-            OutputStream outputStream = getContentResolver().openOutputStream(uri);
-            StringBuilder sb = new StringBuilder();
+    private void startTelemetryExport(Uri uri) {
+        session.getExporter().exportTelemetry(session.getTelemetry(), () -> getContentResolver().openOutputStream(uri),
+                new RosterExporter.Listener() {
+                    @Override
+                    public void onProgress(int written, int total) {}
+
+                    @Override
+                    public void onFinished(int written) {
+                        Toast.makeText(ProfessorActivity.this, "Telemetry saved", Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onCancelled(int written) {}
+
+                    @Override
+                    public void onFailed(Exception error) {
+                        Toast.makeText(ProfessorActivity.this, "Error saving telemetry: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+                    }
+                });
+    }
 
-            // Header
-            sb.append("Roll Number,Timestamp\n");
+    private void createFile(ExportFormat format) {
+        pendingFormat = format;
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(format.mimeType);
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmm", Locale.getDefault()).format(new Date());
+        intent.putExtra(Intent.EXTRA_TITLE, "Attendance_" + timeStamp + "." + format.extension);
+        startActivityForResult(intent, 4001);
+    }
 
-            for (String student : studentList) {
-                // student string looks like: "21BCE045\n(Device: abc) @ 10:30:45"
+    private void startExport(Uri uri, ExportFormat format) {
+        btnExport.setText("Cancel Export");
+        // Copies references only; the records themselves are immutable
+        ArrayList<CheckIn> snapshot = new ArrayList<>(session.getRoster().entries());
+        // Not this screen's resolver: the export may outlive it
+        ContentResolver resolver = getApplicationContext().getContentResolver();
+        exportTask = session.getExporter().export(snapshot, format,
+                () -> resolver.openOutputStream(uri), exportListener(uri));
+        session.setExport(exportTask, uri);
+    }
 
-                // 1. Split into Name and Time
-                String[] parts = student.split(" @ ");
+    private RosterExporter.Listener exportListener(Uri uri) {
+        return new RosterExporter.Listener() {
+            @Override
+            public void onProgress(int written, int total) {
+                statusText.setText("Exporting... " + written + "/" + total);
+            }
 
-                String namePart = parts[0].replace("\n", " ").replace(",", " "); // Clean up name
-                String timePart = (parts.length > 1) ? parts[1] : ""; // Get time if it exists
+            @Override
+            public void onFinished(int written) {
+                if (exportDone("Saved " + written + " students")) {
+                    Toast.makeText(ProfessorActivity.this, "Saved Successfully!", Toast.LENGTH_LONG).show();
+                }
+            }
 
-                // 2. Write: Name,Time
-                sb.append(namePart).append(",").append(timePart).append("\n");
+            @Override
+            public void onCancelled(int written) {
+                discard(uri);
+                exportDone("Export cancelled");
             }
 
-            outputStream.write(sb.toString().getBytes());
-            outputStream.close();
+            @Override
+            public void onFailed(Exception error) {
+                discard(uri);
+                if (exportDone("Export failed")) {
+                    Toast.makeText(ProfessorActivity.this, "Error saving file: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+                }
+            }
+        };
+    }
 
-            Toast.makeText(this, "Saved Successfully!", Toast.LENGTH_LONG).show();
+    /** Returns false if this screen is already gone, e.g. it was closed mid-export. */
+    private boolean exportDone(String status) {
+        exportTask = null;
+        if (session != null) session.setExport(null, null);
+        if (isDestroyed()) return false;
+        btnExport.setText("Export to CSV / Excel");
+        statusText.setText("Status: " + status);
+        return true;
+    }
+
+    /** Deletes a half-written export, so a truncated roster can't pass for a whole one. */
+    private void discard(Uri document) {
+        try {
+            DocumentsContract.deleteDocument(getContentResolver(), document);
         } catch (Exception e) {
-            Toast.makeText(this, "Error saving file: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            // Not every provider supports deleting (FileNotFound, Security, UnsupportedOperation)
+            Toast.makeText(this, "The unfinished file could not be deleted", Toast.LENGTH_SHORT).show();
         }
     }
 
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == 4001 && resultCode == Activity.RESULT_OK) {
-            if (data != null && data.getData() != null) {
-                writeCSV(data.getData());
+        if (resultCode != Activity.RESULT_OK || data == null) return;
+        if (session == null) {
+            // Recreated while the file picker was open and not bound yet; handled once bound
+            deferredRequest = requestCode;
+            deferredData = data;
+            return;
+        }
+        onPicked(requestCode, data);
+    }
+
+    private void onPicked(int requestCode, Intent data) {
+        if (requestCode == 4001) {
+            if (data.getData() != null) {
+                startExport(data.getData(), pendingFormat);
+            }
+        }
+        if (requestCode == 4002) {
+            if (data.getData() != null) {
+                startTelemetryExport(data.getData());
+            }
+        }
+        if (requestCode == 4004) {
+            usePickedFiles(data);
+        }
+        if (requestCode == 4005) {
+            if (data.getData() != null) {
+                startSemesterReport(data.getData());
+            }
+        }
+        if (requestCode == 4003) {
+            if (data.getData() != null) {
+                session.importEnrolment(data.getData());
             }
         }
     }
@@ -141,49 +526,10 @@ public class ProfessorActivity extends AppCompatActivity {
                     .setNegativeButton("Cancel", null)
                     .show();
         } else {
-            startAdvertising();
+            startSession();
         }
     }
 
-    // --- ADVERTISING LOGIC ---
-    private void startAdvertising() {
-        AdvertisingOptions options = new AdvertisingOptions.Builder().setStrategy(Strategy.P2P_STAR).build();
-
-        Nearby.getConnectionsClient(this)
-                .startAdvertising("Professor", SERVICE_ID, connectionLifecycleCallback, options)
-                .addOnSuccessListener((Void unused) -> statusText.setText("Status: BROADCASTING..."))
-                .addOnFailureListener((Exception e) -> statusText.setText("Error: " + e.getMessage()));
-    }
-
-    private final ConnectionLifecycleCallback connectionLifecycleCallback = new ConnectionLifecycleCallback() {
-        @Override
-        public void onConnectionInitiated(@NonNull String endpointId, @NonNull ConnectionInfo info) {
-            Nearby.getConnectionsClient(getApplicationContext()).acceptConnection(endpointId, payloadCallback);
-        }
-        @Override
-        public void onConnectionResult(@NonNull String endpointId, @NonNull ConnectionResolution result) {}
-        @Override
-        public void onDisconnected(@NonNull String endpointId) {}
-    };
-
-    private final PayloadCallback payloadCallback = new PayloadCallback() {
-        @Override
-        public void onPayloadReceived(@NonNull String endpointId, @NonNull Payload payload) {
-            String data = new String(payload.asBytes(), StandardCharsets.UTF_8);
-
-            // CHANGED: "hh:mm:ss a" gives "12:00:24 AM" instead of "00:00:24"
-            String time = new SimpleDateFormat("hh:mm:ss a", Locale.getDefault()).format(new Date());
-
-            studentList.add(data + " @ " + time);
-            adapter.notifyDataSetChanged();
-
-            Payload response = Payload.fromBytes("SUCCESS".getBytes(StandardCharsets.UTF_8));
-            Nearby.getConnectionsClient(getApplicationContext()).sendPayload(endpointId, response);
-        }
-
-        @Override
-        public void onPayloadTransferUpdate(@NonNull String endpointId, @NonNull PayloadTransferUpdate update) {}
-    };
 
     // --- PERMISSIONS ---
     private boolean hasPermissions() {
@@ -209,6 +555,7 @@ public class ProfessorActivity extends AppCompatActivity {
     private void requestPermissions() {
         if (Build.VERSION.SDK_INT >= 33) {
             ActivityCompat.requestPermissions(this, new String[]{
+                    Manifest.permission.POST_NOTIFICATIONS, // for the session notification; optional
                     Manifest.permission.NEARBY_WIFI_DEVICES,
                     Manifest.permission.BLUETOOTH_SCAN,
                     Manifest.permission.BLUETOOTH_ADVERTISE,
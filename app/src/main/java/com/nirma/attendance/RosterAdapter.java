@@ -0,0 +1,114 @@
+package com.nirma.attendance;
+
+import android.view.Choreographer;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Shows the roster in a RecyclerView. Arrivals are not pushed to the view one by one:
+ * {@link #onRosterChanged()} only schedules a frame callback, and on the next frame
+ * everything that arrived since the last one is published as a single range insert.
+ * The roster is append-only, so that range is the whole diff.
+ */
+public class RosterAdapter extends RecyclerView.Adapter<RosterAdapter.Holder> {
+
+    private final Roster roster;
+    private final Set<String> flaggedRolls;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    // "hh:mm:ss a" gives "12:00:24 AM" instead of "00:00:24"
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm:ss a", Locale.getDefault());
+    // Reused on every bind so scrolling doesn't churn the heap
+    private final Date scratchDate = new Date();
+    private final StringBuffer scratchText = new StringBuffer(48);
+    private final FieldPosition scratchField = new FieldPosition(0);
+
+    private int shownCount; // how many roster entries the RecyclerView knows about
+    private boolean frameScheduled;
+
+    private final Choreographer.FrameCallback flush = frameTimeNanos -> {
+        frameScheduled = false;
+        publishPending();
+    };
+
+    public RosterAdapter(Roster roster, Set<String> flaggedRolls) {
+        this.roster = roster;
+        this.flaggedRolls = flaggedRolls;
+        this.shownCount = roster.size();
+    }
+
+    /** Call after adding to the roster. Cheap; the view is updated at most once per frame. */
+    public void onRosterChanged() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            choreographer.postFrameCallback(flush);
+        }
+    }
+
+    /** Call after clearing the roster. */
+    public void onRosterReset() {
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(flush);
+            frameScheduled = false;
+        }
+        shownCount = roster.size();
+        notifyDataSetChanged();
+    }
+
+    private void publishPending() {
+        int total = roster.size();
+        if (total > shownCount) {
+            int start = shownCount;
+            shownCount = total;
+            notifyItemRangeInserted(start, total - start);
+        } else if (total < shownCount) {
+            onRosterReset();
+        }
+    }
+
+    @NonNull
+    @Override
+    public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(android.R.layout.simple_list_item_2, parent, false);
+        return new Holder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull Holder holder, int position) {
+        CheckIn checkIn = roster.get(position);
+        scratchDate.setTime(checkIn.timestampMillis);
+        scratchText.setLength(0);
+        scratchText.append("Device: ").append(checkIn.deviceTag()).append(" @ ");
+        timeFormat.format(scratchDate, scratchText, scratchField);
+        if (flaggedRolls.contains(checkIn.rollNo)) {
+            scratchText.append("\n⚠ Phone was used by another student before");
+        }
+        holder.title.setText(checkIn.rollNo);
+        holder.subtitle.setText(scratchText);
+    }
+
+    @Override
+    public int getItemCount() {
+        return shownCount;
+    }
+
+    static class Holder extends RecyclerView.ViewHolder {
+        final TextView title;
+        final TextView subtitle;
+
+        Holder(View itemView) {
+            super(itemView);
+            title = itemView.findViewById(android.R.id.text1);
+            subtitle = itemView.findViewById(android.R.id.text2);
+        }
+    }
+}
@@ -0,0 +1,726 @@
+package com.nirma.attendance;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.net.Uri;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.util.Log;
+import android.widget.Toast;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+import com.google.android.gms.nearby.Nearby;
+import com.google.android.gms.nearby.connection.AdvertisingOptions;
+import com.google.android.gms.nearby.connection.ConnectionsClient;
+import com.google.android.gms.nearby.connection.Strategy;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Hosts the professor's session: advertising, the {@link AttendanceHub}, the roster and its
+ * journal. ProfessorActivity binds to it and observes; rotating the screen or switching apps
+ * no longer touches the session. While broadcasting it runs in the foreground with a partial
+ * wake lock, so check-ins keep flowing with the screen off.
+ *
+ * Everything here, including {@link Observer} callbacks, runs on the main thread; the roster
+ * and flagged rolls handed out are the live objects, so only read them there.
+ */
+public class SessionService extends Service {
+
+    public interface Observer {
+        /** New rows were appended to the roster. */
+        void onRosterChanged();
+
+        void onStatusChanged(String status, boolean broadcasting);
+    }
+
+    public static final String ACTION_STOP = "com.nirma.attendance.action.STOP_SESSION";
+
+    private static final String TAG = "SessionService";
+    private static final String SERVICE_ID = "com.nirma.attendance";
+    // Advertised nonce/expiry; a stale advert from a phone that crashed stops matching after this
+    private static final long SESSION_TTL_MS = 2 * 60 * 60 * 1000L;
+    private static final int VERIFY_BATCH_SIZE = 50;
+    private static final long VERIFY_BATCH_DELAY_MS = 300;
+    // Hub limits; tune against the check-ins/min shown while broadcasting
+    private static final int MAX_ACTIVE_ENDPOINTS = 10;
+    private static final long QUEUE_TIMEOUT_MS = 20_000;
+    private static final long IDLE_TIMEOUT_MS = 15_000;
+    private static final long ACK_TIMEOUT_MS = 5_000;
+    private static final long HUB_TICK_MS = 1_000;
+    // Longer than any lecture; released on stop anyway
+    private static final long WAKE_LOCK_TIMEOUT_MS = 4 * 60 * 60 * 1000L;
+    // Journal of the session on screen; archived under sessions/ when the professor is done
+    private static final String LIVE_JOURNAL = "live.journal";
+    private static final long JOURNAL_CLOSE_WAIT_MS = 500; // well inside the main thread's ANR limit
+    // Copy of the imported class list, kept until the session is finished
+    private static final String ENROLMENT_FILE = "enrolment.csv";
+    // Next to each journal: the Firestore session key and how many of its records are synced
+    private static final String SYNC_SUFFIX = ".sync";
+    private static final long SYNC_LINGER_MS = 2_000;
+    private static final String CHANNEL_ID = "session";
+    private static final int NOTIFICATION_ID = 1;
+
+    public final class LocalBinder extends Binder {
+        public SessionService getService() {
+            return SessionService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final ArrayList<Observer> observers = new ArrayList<>();
+    private final Roster roster = new Roster();
+    private final HashSet<String> flaggedRolls = new HashSet<>(); // phone was used by someone else in an earlier session
+    private final ThroughputMeter checkInRate = new ThroughputMeter();
+    // Per-stage latencies and hub counters since the last startSession; exported from the export picker
+    private final SessionTelemetry telemetry = new SessionTelemetry();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final SecureRandom random = new SecureRandom();
+    private final ExecutorService io = Executors.newSingleThreadExecutor(); // class list import, device history, archived uploads
+    private final int sessionId = random.nextInt();
+    private ConnectionsClient connections;
+    private NearbyTransport transport;
+    private AttendanceHub hub; // admission, decoding, proxy checks and replies
+    private VerificationClient verificationClient;
+    private BatchVerifier batchVerifier; // only while a hub-verified session is live
+    private AttendanceJournal journal;
+    // Outlives the service instance that closed it, so the next one doesn't open live.journal mid-sync
+    private static AttendanceJournal closingJournal;
+    private DeviceHistory deviceHistory;
+    private EnrolmentIndex enrolment; // null until a class list is imported
+    private RosterSync.Backend syncBackend; // null if the app has no Firebase project
+    private RosterSync sync; // the live journal's
+    private final List<RosterSync> archivedSyncs = new CopyOnWriteArrayList<>(); // finished sessions still uploading
+    // Exports run here rather than in the screen, so a rotation doesn't cut one short
+    private RosterExporter exporter;
+    private RosterExporter.Task export; // the roster export still to be heard from, or null
+    private Uri exportTarget;
+    private ExecutorService reportParsers; // created on the first semester report
+    private boolean reportRunning;
+    private ReportListener reportListener;
+    private Consumer<ReportListener> missedReportEnd; // how the last report went, while no screen listened
+    private boolean destroyed; // guarded by archivedSyncs, which io may add to after onDestroy
+    private PowerManager.WakeLock wakeLock;
+    private boolean broadcasting;
+    private String courseCode;
+    private String status = "Status: Idle";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        connections = Nearby.getConnectionsClient(getApplicationContext());
+        transport = new NearbyTransport(connections);
+        hub = new AttendanceHub(transport, new AttendanceHub.Listener() {
+            @Override
+            public void onAdmitted(CheckIn checkIn) {
+                if (deviceHistory().isSuspect(checkIn.deviceHash, checkIn.rollNo)) {
+                    flaggedRolls.add(checkIn.rollNo);
+                }
+            }
+
+            @Override
+            public void onAccepted(CheckIn checkIn) {
+                addToRoster(checkIn);
+            }
+
+            @Override
+            public void onRefused(CheckIn checkIn, String message) {
+                flaggedRolls.remove(checkIn.rollNo);
+            }
+        }, SystemClock::elapsedRealtime, telemetry, MAX_ACTIVE_ENDPOINTS, QUEUE_TIMEOUT_MS, IDLE_TIMEOUT_MS, ACK_TIMEOUT_MS);
+        transport.setListener(hub);
+        exporter = new RosterExporter(Executors.newSingleThreadExecutor(), ContextCompat.getMainExecutor(this));
+        restoreEnrolment(); // before the journal, so replayed check-ins count as present
+        if (!FirebaseApp.getApps(this).isEmpty()) {
+            syncBackend = new FirestoreBackend(FirebaseFirestore.getInstance(), FirebaseAuth.getInstance());
+        }
+        openJournal();
+        io.execute(this::resumeArchivedSyncs);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            stopSession();
+            if (observers.isEmpty()) finish(); // stopped from the notification with no screen open
+        }
+        // If we're killed the journal has the check-ins; the professor restarts advertising
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (broadcasting) stopSession();
+        if (verificationClient != null) verificationClient.shutdown();
+        exporter.shutdown();
+        if (reportParsers != null) reportParsers.shutdownNow();
+        saveDeviceHistory(); // queued ahead of the shutdown, so it still runs
+        io.shutdown();
+        // Not archived: if we got here without finish(), the next start recovers it
+        closeJournal(false);
+        // Whatever hasn't uploaded stays in the checkpoints; the next session resumes it
+        synchronized (archivedSyncs) {
+            destroyed = true;
+            for (RosterSync archived : archivedSyncs) archived.shutdown();
+        }
+    }
+
+    // --- OBSERVERS ---
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+        observer.onStatusChanged(status, broadcasting);
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    public Roster getRoster() {
+        return roster;
+    }
+
+    public HashSet<String> getFlaggedRolls() {
+        return flaggedRolls;
+    }
+
+    /** Hub gauges are as of the last hubTick; reading them must not expire connections. */
+    public SessionTelemetry getTelemetry() {
+        return telemetry;
+    }
+
+    // --- EXPORT ---
+    public RosterExporter getExporter() {
+        return exporter;
+    }
+
+    /** Remembers the roster export writing to {@code target}, so a recreated screen can take it over. */
+    public void setExport(RosterExporter.Task task, Uri target) {
+        export = task;
+        exportTarget = target;
+    }
+
+    /** The roster export a screen started and hasn't heard the end of, or null. */
+    public RosterExporter.Task getExport() {
+        return export;
+    }
+
+    public Uri getExportTarget() {
+        return exportTarget;
+    }
+
+    // --- SEMESTER REPORT ---
+    /** Hears how a semester report went, on the main thread. */
+    public interface ReportListener {
+        void onReportSaved(SemesterAggregator.Report report);
+
+        void onReportFailed(Exception error);
+    }
+
+    /**
+     * Sets who hears about semester reports; null detaches, e.g. on a rotation. A report that
+     * ended meanwhile is told to the next listener.
+     */
+    public void setReportListener(ReportListener listener) {
+        reportListener = listener;
+        if (listener != null && missedReportEnd != null) {
+            Consumer<ReportListener> missed = missedReportEnd;
+            missedReportEnd = null;
+            missed.accept(listener);
+        }
+    }
+
+    public boolean isReportRunning() {
+        return reportRunning;
+    }
+
+    /**
+     * Reads {@code sources} and writes the report to {@code target} on a thread of its own, so a
+     * recreated screen doesn't stop it. On failure the half-written file is deleted. Returns
+     * false, doing nothing, if a report is already running.
+     */
+    public boolean startSemesterReport(List<SemesterAggregator.Source> sources, Uri target, double defaulterPercent) {
+        if (reportRunning) return false;
+        reportRunning = true;
+        // Only its roll numbers are read off the main thread, and those never change
+        EnrolmentIndex classList = enrolment;
+        int cores = Runtime.getRuntime().availableProcessors();
+        // The runner parses too, so the pool holds the rest; the pool never waits on itself
+        if (reportParsers == null) reportParsers = Executors.newFixedThreadPool(Math.max(1, cores - 1));
+        SemesterAggregator aggregator = new SemesterAggregator(reportParsers, cores);
+        new Thread(() -> {
+            try {
+                SemesterAggregator.Report report = aggregator.aggregate(sources, classList);
+                try (OutputStream out = getContentResolver().openOutputStream(target)) {
+                    if (out == null) throw new IOException("Could not open output file");
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    report.writeCsv(writer, defaulterPercent);
+                    writer.flush();
+                }
+                handler.post(() -> endReport(listener -> listener.onReportSaved(report)));
+            } catch (IOException | InterruptedException | IllegalStateException e) {
+                try {
+                    DocumentsContract.deleteDocument(getContentResolver(), target);
+                } catch (Exception notDeleted) {
+                    // Not every provider supports deleting (FileNotFound, Security, UnsupportedOperation)
+                    Log.w(TAG, "Could not delete the unfinished report " + target, notDeleted);
+                }
+                handler.post(() -> endReport(listener -> listener.onReportFailed(e)));
+            }
+        }, "semester-report").start();
+        return true;
+    }
+
+    private void endReport(Consumer<ReportListener> outcome) {
+        reportRunning = false;
+        if (reportListener != null) {
+            outcome.accept(reportListener);
+        } else {
+            missedReportEnd = outcome;
+        }
+    }
+
+    public boolean isBroadcasting() {
+        return broadcasting;
+    }
+
+    /** The imported class list with who is present, or null. */
+    public EnrolmentIndex getEnrolment() {
+        return enrolment;
+    }
+
+    /** Course code of the live session, or null. */
+    public String getCourseCode() {
+        return courseCode;
+    }
+
+    private void setStatus(String status) {
+        this.status = status;
+        for (Observer observer : new ArrayList<>(observers)) {
+            observer.onStatusChanged(status, broadcasting);
+        }
+    }
+
+    // --- SESSION ---
+    /** Starts advertising {@code courseCode}. The caller has checked permissions and location. */
+    public void startSession(String courseCode, boolean hubVerify, boolean fastCheckIn) {
+        if (broadcasting) return;
+        broadcasting = true;
+        this.courseCode = SessionDescriptor.normalizeCourse(courseCode);
+        // The export is this session's alone; the last one's stays readable until now
+        telemetry.clear();
+        goForeground();
+
+        if (hubVerify && batchVerifier == null) {
+            startBatchVerifier();
+        }
+        // Fresh nonce per start so an advert overheard in an earlier lecture can't be replayed
+        SessionDescriptor session = new SessionDescriptor(courseCode, sessionId,
+                random.nextInt(), (System.currentTimeMillis() + SESSION_TTL_MS) / 1000,
+                (hubVerify ? SessionDescriptor.FLAG_HUB_VERIFY : 0)
+                        | (fastCheckIn ? SessionDescriptor.FLAG_FAST_CHECK_IN : 0));
+        hub.setHandshakeSeal(fastCheckIn ? new HandshakeSeal(session) : null);
+
+        AdvertisingOptions options = new AdvertisingOptions.Builder().setStrategy(Strategy.P2P_STAR).build();
+        connections.startAdvertising(session.encode(), SERVICE_ID, transport.lifecycleCallback(), options)
+                .addOnSuccessListener((Void unused) -> {
+                    setStatus("Status: BROADCASTING " + session.courseCode + "...");
+                    handler.postDelayed(hubTick, HUB_TICK_MS);
+                })
+                .addOnFailureListener((Exception e) -> {
+                    stopSession();
+                    setStatus("Error: " + e.getMessage());
+                });
+    }
+
+    public void stopSession() {
+        connections.stopAdvertising();
+        connections.stopAllEndpoints();
+        stopBatchVerifier();
+        handler.removeCallbacks(hubTick);
+        hub.reset();
+        broadcasting = false;
+        courseCode = null;
+        if (wakeLock != null && wakeLock.isHeld()) wakeLock.release();
+        stopForeground(true);
+        setStatus("Status: Stopped");
+    }
+
+    /** The professor is done with this roster: archive its journal and let the service go. */
+    public void finish() {
+        if (broadcasting) return;
+        closeJournal(true);
+        saveDeviceHistory();
+        // The next lecture may be another course; its list is imported afresh
+        if (enrolment != null && !new File(getFilesDir(), ENROLMENT_FILE).delete()) {
+            Log.w(TAG, "Could not delete the class list");
+        }
+        stopSelf();
+    }
+
+    private void goForeground() {
+        if (Build.VERSION.SDK_INT >= 26) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Attendance session",
+                    NotificationManager.IMPORTANCE_LOW);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+        int immutable = Build.VERSION.SDK_INT >= 23 ? PendingIntent.FLAG_IMMUTABLE : 0;
+        PendingIntent open = PendingIntent.getActivity(this, 0,
+                new Intent(this, ProfessorActivity.class), immutable);
+        PendingIntent stop = PendingIntent.getService(this, 1,
+                new Intent(this, SessionService.class).setAction(ACTION_STOP), immutable);
+        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_data_bluetooth)
+                .setContentTitle("Taking attendance")
+                .setContentText(courseCode + " · students can check in")
+                .setContentIntent(open)
+                .addAction(0, "Stop", stop)
+                .setOngoing(true)
+                .build();
+        // ProfessorActivity starts us as well as binding, so this outlives the activity
+        if (Build.VERSION.SDK_INT >= 29) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+
+        if (wakeLock == null) {
+            PowerManager power = (PowerManager) getSystemService(POWER_SERVICE);
+            wakeLock = power.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "ProximityAttendance:session");
+            wakeLock.setReferenceCounted(false);
+        }
+        wakeLock.acquire(WAKE_LOCK_TIMEOUT_MS);
+    }
+
+    // --- HUB HOUSEKEEPING ---
+    private final Runnable hubTick = new Runnable() {
+        @Override
+        public void run() {
+            hub.tick();
+            setStatus("Status: BROADCASTING · " + hub.activeCount() + " connected · "
+                    + hub.queuedCount() + " waiting · "
+                    + checkInRate.perMinute(System.currentTimeMillis()) + " check-ins/min"
+                    + (enrolment == null ? "" : " · " + presence())
+                    + (sync == null || sync.pendingCount() == 0 ? "" : " · " + sync.pendingCount() + " to upload")
+                    + (journal == null || journal.failure() == null ? "" : " · NOT SAVING"));
+            handler.postDelayed(this, HUB_TICK_MS);
+        }
+    };
+
+    private void addToRoster(CheckIn checkIn) {
+        if (roster.add(checkIn)) {
+            if (journal != null) journal.append(checkIn);
+            if (sync != null) sync.offer(checkIn); // only queues; uploads run on the sync's own thread
+            checkInRate.record(System.currentTimeMillis());
+            deviceHistory().remember(checkIn.deviceHash, checkIn.rollNo);
+            for (Observer observer : observers) {
+                observer.onRosterChanged();
+            }
+        }
+    }
+
+    // --- CLASS LIST ---
+    /**
+     * Reads the class list at {@code uri} off the main thread. From then on roll numbers not
+     * on it are refused and {@link #getEnrolment} tracks who is still absent.
+     */
+    public void importEnrolment(Uri uri) {
+        io.execute(() -> {
+            try {
+                byte[] bytes;
+                try (InputStream in = getContentResolver().openInputStream(uri)) {
+                    if (in == null) throw new IOException("Could not open " + uri);
+                    bytes = readFully(in);
+                }
+                EnrolmentIndex index = parseEnrolment(new ByteArrayInputStream(bytes));
+                if (index.size() == 0) throw new IOException("No roll numbers found");
+                // Only saved once it parses, so a bad file can't replace a good list
+                try (OutputStream out = new FileOutputStream(new File(getFilesDir(), ENROLMENT_FILE))) {
+                    out.write(bytes);
+                }
+                handler.post(() -> applyEnrolment(index));
+            } catch (IOException e) {
+                Log.e(TAG, "Class list import failed", e);
+                handler.post(() -> Toast.makeText(this, "Could not read the class list: " + e.getMessage(),
+                        Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+
+    private void applyEnrolment(EnrolmentIndex index) {
+        for (CheckIn checkIn : roster.entries()) {
+            index.markPresent(checkIn.rollNo); // whoever checked in before the import
+        }
+        enrolment = index;
+        hub.setEnrolment(index);
+        setStatus(broadcasting ? status : "Status: Class list loaded · " + presence());
+    }
+
+    private void restoreEnrolment() {
+        File file = new File(getFilesDir(), ENROLMENT_FILE);
+        if (!file.exists()) return;
+        // A few KB even for a large class, so it's fine on the main thread
+        try (InputStream in = new FileInputStream(file)) {
+            enrolment = parseEnrolment(in);
+            hub.setEnrolment(enrolment);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not reload the class list", e);
+        }
+    }
+
+    private String presence() {
+        return enrolment.presentCount() + "/" + enrolment.size() + " present · "
+                + enrolment.absentCount() + " absent";
+    }
+
+    private static EnrolmentIndex parseEnrolment(InputStream in) throws IOException {
+        return EnrolmentIndex.parseCsv(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8 * 1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+
+    // --- SESSION JOURNAL ---
+    private File sessionsDir() {
+        File dir = new File(getFilesDir(), "sessions");
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create " + dir);
+        }
+        return dir;
+    }
+
+    /** Rebuilds the roster from a session that was cut short, then keeps appending to it. */
+    private void openJournal() {
+        File file = new File(sessionsDir(), LIVE_JOURNAL);
+        try {
+            if (closingJournal != null) {
+                // Only when the service comes straight back; a close is a single fsync
+                if (!closingJournal.awaitClosed(JOURNAL_CLOSE_WAIT_MS)) {
+                    Log.w(TAG, "Previous journal still closing: " + closingJournal.getFile());
+                }
+                closingJournal = null;
+            }
+            ArrayList<CheckIn> journalled = new ArrayList<>();
+            // ~1 ms for a 500-student session, so it's fine to do on the main thread
+            int recovered = AttendanceJournal.replay(file, checkIn -> {
+                journalled.add(checkIn);
+                roster.add(checkIn);
+                hub.restore(checkIn);
+            });
+            if (recovered > 0) {
+                status = "Status: Recovered " + roster.size() + " students";
+            }
+            journal = AttendanceJournal.open(file);
+            journal.setListener(error -> {
+                Log.e(TAG, "Journal write failed, no longer saving check-ins", error);
+                handler.post(() -> Toast.makeText(this, "Warning: attendance is no longer being saved",
+                        Toast.LENGTH_LONG).show());
+            });
+            startSync(file, journalled);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            Log.e(TAG, "Journal unavailable, this session won't survive a restart", e);
+            Toast.makeText(this, "Warning: attendance is not being saved", Toast.LENGTH_LONG).show();
+        }
+    }
+
+    private void closeJournal(boolean archive) {
+        if (journal == null) return;
+        if (sync != null) sync.shutdown();
+        // The last fsync can take a while on a slow card; it finishes on the journal's thread
+        journal.closeAsync();
+        closingJournal = journal;
+        if (archive && journal.appendedCount() > 0) {
+            File archived = archiveFile();
+            if (!journal.getFile().renameTo(archived)) {
+                Log.w(TAG, "Could not archive " + journal.getFile());
+            } else if (sync != null && sync.pendingCount() > 0) {
+                // The rest uploads from the archive, by resumeArchivedSyncs next time
+                if (!syncCheckpoint(journal.getFile()).renameTo(syncCheckpoint(archived))) {
+                    Log.w(TAG, "Could not keep the upload checkpoint for " + archived);
+                }
+            }
+        }
+        sync = null;
+        journal = null;
+    }
+
+    /**
+     * A new archive name. renameTo replaces an existing file, so two sessions finished in the
+     * same second (or a clock set back) must not share one; sorted by name they stay in order.
+     */
+    private File archiveFile() {
+        String name = "Attendance_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date())
+                + "_" + Integer.toHexString(sessionId);
+        File archived = new File(sessionsDir(), name + ".journal");
+        for (int n = 2; archived.exists() || syncCheckpoint(archived).exists(); n++) {
+            archived = new File(sessionsDir(), name + "_" + n + ".journal");
+        }
+        return archived;
+    }
+
+    // --- FIRESTORE SYNC ---
+    private static File syncCheckpoint(File journalFile) {
+        return new File(journalFile.getPath() + SYNC_SUFFIX);
+    }
+
+    private RosterSync newSync(File journalFile) {
+        return new RosterSync(syncBackend, syncCheckpoint(journalFile), RosterSync.MAX_BATCH, SYNC_LINGER_MS,
+                new Backoff(2_000, 5 * 60_000L, random), new Backoff(60_000, 30 * 60_000L, random),
+                Executors.newSingleThreadScheduledExecutor(), telemetry);
+    }
+
+    /** Uploads the live journal's check-ins not yet in Firestore, then each new one as it's added. */
+    private void startSync(File journalFile, List<CheckIn> journalled) {
+        if (syncBackend == null) return;
+        if (journalled.isEmpty()) {
+            // A fresh roster; a checkpoint left over from the last one must not carry its key over
+            syncCheckpoint(journalFile).delete();
+        }
+        String sessionKey = new SimpleDateFormat("yyyyMMdd_HHmm", Locale.US).format(new Date())
+                + "_" + Integer.toHexString(sessionId);
+        RosterSync started = newSync(journalFile);
+        try {
+            started.start(sessionKey, journalled);
+            sync = started;
+        } catch (IOException e) {
+            started.shutdown();
+            Log.e(TAG, "Firestore sync unavailable for this session", e);
+        }
+    }
+
+    /** Finishes uploading sessions that were archived before all their check-ins got out. */
+    private void resumeArchivedSyncs() {
+        if (syncBackend == null) return;
+        File[] checkpoints = sessionsDir().listFiles((dir, name) -> name.endsWith(".journal" + SYNC_SUFFIX));
+        if (checkpoints == null) return;
+        for (File checkpoint : checkpoints) {
+            String path = checkpoint.getPath();
+            File journalFile = new File(path.substring(0, path.length() - SYNC_SUFFIX.length()));
+            if (journalFile.getName().equals(LIVE_JOURNAL)) continue;
+            ArrayList<CheckIn> journalled = new ArrayList<>();
+            RosterSync archived = newSync(journalFile);
+            try {
+                AttendanceJournal.replay(journalFile, journalled::add);
+                archived.start(journalFile.getName(), journalled);
+            } catch (IOException e) {
+                archived.shutdown();
+                Log.w(TAG, "Could not resume the upload of " + journalFile, e);
+                continue;
+            }
+            if (archived.pendingCount() == 0) {
+                // Uploaded in full last time
+                archived.shutdown();
+                if (!checkpoint.delete()) Log.w(TAG, "Could not delete " + checkpoint);
+                continue;
+            }
+            synchronized (archivedSyncs) {
+                if (destroyed) {
+                    // Too late: the service is gone, the next one picks this checkpoint up
+                    archived.shutdown();
+                    return;
+                }
+                archivedSyncs.add(archived);
+            }
+        }
+    }
+
+    // --- PROXY HISTORY ---
+    private DeviceHistory deviceHistory() {
+        if (deviceHistory == null) {
+            deviceHistory = DeviceHistory.load(new File(getFilesDir(), "device_history.bloom"));
+        }
+        return deviceHistory;
+    }
+
+    /** On the io thread: 32 KB and an fsync are too slow for the main thread. */
+    private void saveDeviceHistory() {
+        DeviceHistory history = deviceHistory;
+        if (history == null) return;
+        File file = new File(getFilesDir(), "device_history.bloom");
+        io.execute(() -> {
+            if (!history.isDirty()) return;
+            try {
+                history.save(file);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not save device history", e);
+            }
+        });
+    }
+
+    // --- HUB VERIFICATION ---
+    private void startBatchVerifier() {
+        if (verificationClient == null) {
+            verificationClient = new VerificationClient.Builder(getString(R.string.verification_server_url),
+                    ContextCompat.getMainExecutor(this)).build();
+        }
+        VerificationClient client = verificationClient;
+        BatchVerifier.Backend backend = batch -> {
+            long start = System.nanoTime();
+            try {
+                return client.markBatch(batch);
+            } finally {
+                telemetry.recordSince("hub.verify_batch", start);
+            }
+        };
+        batchVerifier = new BatchVerifier(backend, VERIFY_BATCH_SIZE, VERIFY_BATCH_DELAY_MS,
+                Executors.newSingleThreadScheduledExecutor(), ContextCompat.getMainExecutor(this),
+                hub::onVerdict);
+        hub.setBatchVerifier(batchVerifier);
+    }
+
+    private void stopBatchVerifier() {
+        if (batchVerifier != null) {
+            hub.setBatchVerifier(null);
+            batchVerifier.shutdown();
+            batchVerifier = null;
+        }
+    }
+}
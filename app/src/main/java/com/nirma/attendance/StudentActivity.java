@@ -4,7 +4,11 @@ import android.Manifest;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
@@ -16,13 +20,52 @@ import androidx.core.content.ContextCompat;
 import com.google.android.gms.nearby.Nearby;
 import com.google.android.gms.nearby.connection.*;
 import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
 
 public class StudentActivity extends AppCompatActivity {
 
     private static final String SERVICE_ID = "com.nirma.attendance";
+    private static final String TAG = "StudentActivity";
+    // Stage latencies across every check-in this process has made; summarised to logcat
+    private static final SessionTelemetry TELEMETRY = new SessionTelemetry();
+    // Radio budget per check-in: scanning stops by itself instead of running until the app dies
+    private static final long DISCOVERY_TIMEOUT_MS = 30_000;
+    private static final long CONNECT_TIMEOUT_MS = 20_000; // fast mode waits for the server in here
+    private static final long ACK_TIMEOUT_MS = 20_000;
+    private static final int MAX_ATTEMPTS = 4;
+    // Resends of the same check-in over one link while no reply has come back
+    private static final long RESEND_INTERVAL_MS = 4_000;
+    private static final int MAX_RESENDS = 2;
     private EditText etRollNo;
+    private EditText etCourseCode;
     private TextView statusLog;
     private Button btnScan;
+    private final SecureRandom random = new SecureRandom();
+    private VerificationClient verificationClient;
+    private VerificationClient.Call pendingVerification;
+    private boolean professorVerifies; // professor's phone batches the server check for the class
+    private HandshakeSeal handshakeSeal; // fast mode: the check-in goes in the connection request
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private CheckInStateMachine checkIn;
+
+    // One check-in; reset on every tap. The server's answer holds across reconnects.
+    private final StageTimer timer = new StageTimer(TELEMETRY, "student.");
+    private String rollNo;
+    private String courseCode;
+    private long deviceHash;
+    private long checkInId; // sent with every resend and reconnect, so the professor counts it once
+    private long recordedAt; // professor's time for our check-in, from its ACK
+    private boolean verified;
+    private boolean verifying;
+
+    // One attempt at reaching the professor; reset on every reconnect
+    private String foundEndpoint;      // professor we're connecting to
+    private String connectedEndpoint;  // set once the Nearby link is up
+    private boolean payloadSent;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -30,14 +73,48 @@ public class StudentActivity extends AppCompatActivity {
         setContentView(R.layout.activity_student);
 
         etRollNo = findViewById(R.id.etRollNo);
+        etCourseCode = findViewById(R.id.etCourseCode);
         statusLog = findViewById(R.id.statusLog);
         btnScan = findViewById(R.id.btnScan);
 
+        verificationClient = new VerificationClient.Builder(getString(R.string.verification_server_url),
+                ContextCompat.getMainExecutor(this)).build();
+        checkIn = new CheckInStateMachine(new CheckInStateMachine.Actions() {
+            @Override
+            public void startDiscovery() {
+                scan();
+            }
+
+            @Override
+            public void stopRadio() {
+                StudentActivity.this.stopRadio();
+            }
+
+            @Override
+            public void onStateChanged(CheckInStateMachine.State state, String message) {
+                showState(state, message);
+            }
+        }, (delayMillis, task) -> handler.postDelayed(task, delayMillis), SystemClock::elapsedRealtime, TELEMETRY,
+                new Backoff(1_000, 8_000, random), MAX_ATTEMPTS, DISCOVERY_TIMEOUT_MS, CONNECT_TIMEOUT_MS, ACK_TIMEOUT_MS);
+
         btnScan.setOnClickListener(v -> {
-            if (etRollNo.getText().toString().isEmpty()) {
+            if (checkIn.state().isActive()) {
+                Toast.makeText(this, "Already checking in...", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            String rollNo = etRollNo.getText().toString().trim();
+            if (rollNo.isEmpty()) {
                 etRollNo.setError("Enter Roll No!");
                 return;
             }
+            if (!CheckInCodec.isValidRollNo(rollNo)) {
+                etRollNo.setError("Roll No is too long!");
+                return;
+            }
+            if (!SessionDescriptor.isValidCourse(etCourseCode.getText().toString())) {
+                etCourseCode.setError("Enter the course code shown by your professor");
+                return;
+            }
             if (hasPermissions()) {
                 // Check if GPS is ON before scanning
                 checkLocationEnabled();
@@ -47,6 +124,15 @@ public class StudentActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Nothing may call back into a dead activity, and the radio must not outlive it
+        checkIn.cancel();
+        handler.removeCallbacksAndMessages(null);
+        verificationClient.shutdown();
+    }
+
     // --- 1. GPS CHECKER (The "Foolproof" Method) ---
     private void checkLocationEnabled() {
         android.location.LocationManager lm = (android.location.LocationManager) getSystemService(android.content.Context.LOCATION_SERVICE);
@@ -65,33 +151,111 @@ public class StudentActivity extends AppCompatActivity {
                     .setNegativeButton("Cancel", null)
                     .show();
         } else {
-            startDiscovery();
+            beginCheckIn();
         }
     }
 
     // --- 2. DISCOVERY LOGIC ---
-    private void startDiscovery() {
+    private void beginCheckIn() {
+        String roll = etRollNo.getText().toString().trim();
+        String course = SessionDescriptor.normalizeCourse(etCourseCode.getText().toString());
+        if (checkIn.state() == CheckInStateMachine.State.MARKED && roll.equals(rollNo) && course.equals(courseCode)) {
+            Toast.makeText(this, "Already marked for " + course, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        rollNo = roll;
+        courseCode = course;
+        String deviceId = Settings.Secure.getString(getContentResolver(), Settings.Secure.ANDROID_ID);
+        deviceHash = CheckInCodec.hashDeviceId(deviceId);
+        if (pendingVerification != null) pendingVerification.cancel();
+        checkInId = random.nextLong();
+        recordedAt = 0;
+        verified = false;
+        verifying = false;
+        timer.start();
+        checkIn.start();
+    }
+
+    // One attempt; the state machine calls this on the tap and again for every reconnect
+    private void scan() {
         // FIX: Always stop previous scan first to avoid "Status Already Discovering" (8002)
         Nearby.getConnectionsClient(this).stopDiscovery();
+        foundEndpoint = null;
+        connectedEndpoint = null;
+        handshakeSeal = null;
+        payloadSent = false;
 
-        statusLog.setText("Looking for Professor...");
         DiscoveryOptions options = new DiscoveryOptions.Builder().setStrategy(Strategy.P2P_STAR).build();
-
         Nearby.getConnectionsClient(this)
                 .startDiscovery(SERVICE_ID, endpointDiscoveryCallback, options)
-                .addOnSuccessListener((Void unused) -> statusLog.setText("Scanning for class..."))
-                .addOnFailureListener((Exception e) -> statusLog.setText("Scan Failed: " + e.getMessage()));
+                .addOnSuccessListener((Void unused) -> timer.mark("scanning"))
+                .addOnFailureListener((Exception e) -> checkIn.fail("Scan Failed: " + e.getMessage()));
+    }
+
+    private void stopRadio() {
+        Nearby.getConnectionsClient(this).stopDiscovery();
+        if (foundEndpoint != null) {
+            // Also cancels a connection request that hasn't completed yet
+            Nearby.getConnectionsClient(this).disconnectFromEndpoint(foundEndpoint);
+        }
+        // Callbacks for the old link are ignored from here on
+        foundEndpoint = null;
+        connectedEndpoint = null;
+        handshakeSeal = null;
+    }
+
+    private void showState(CheckInStateMachine.State state, String message) {
+        btnScan.setEnabled(!state.isActive());
+        if (state == CheckInStateMachine.State.MARKED) {
+            Log.i(TAG, TELEMETRY.summary());
+            String recorded = recordedAt == 0 ? ""
+                    : "\nRecorded at " + new SimpleDateFormat("hh:mm:ss a", Locale.getDefault()).format(new Date(recordedAt));
+            statusLog.setText(message + recorded + "\n" + timer.summary());
+        } else {
+            statusLog.setText(message);
+        }
+        if (!state.isActive() && pendingVerification != null) {
+            pendingVerification.cancel();
+            verifying = false;
+        }
     }
 
     private final EndpointDiscoveryCallback endpointDiscoveryCallback = new EndpointDiscoveryCallback() {
         @Override
         public void onEndpointFound(@NonNull String endpointId, @NonNull DiscoveredEndpointInfo info) {
-            statusLog.setText("Found: " + info.getEndpointName() + ". Connecting...");
-            Nearby.getConnectionsClient(getApplicationContext())
-                    .requestConnection("Student", endpointId, connectionLifecycleCallback);
+            if (foundEndpoint != null) return; // already on our way to a professor
+            // Other lectures in the building advertise too; only our course is worth a connection
+            SessionDescriptor session = SessionDescriptor.decode(info.getEndpointInfo());
+            if (session == null || !session.matches(courseCode, System.currentTimeMillis())) return;
+            foundEndpoint = endpointId;
+            timer.mark("found");
+            checkIn.onEndpointFound();
+            statusLog.setText("Found " + session.courseCode + ". Connecting...");
+            professorVerifies = session.hasFlag(SessionDescriptor.FLAG_HUB_VERIFY);
+            handshakeSeal = session.hasFlag(SessionDescriptor.FLAG_FAST_CHECK_IN) ? new HandshakeSeal(session) : null;
+            if (handshakeSeal == null) {
+                Nearby.getConnectionsClient(getApplicationContext())
+                        .requestConnection("Student", endpointId, connectionLifecycleCallback);
+            }
+
+            // Overlap the server round trip with the Nearby handshake instead of doing it after.
+            // In fast mode the request is the check-in, so it waits for the server instead.
+            if (professorVerifies) {
+                verified = true; // the professor checks with the server for us
+                sendWhenReady();
+            } else if (verified) {
+                sendWhenReady(); // reconnecting; the server already said yes
+            } else if (!verifying) {
+                checkAttendanceWithServer(rollNo, deviceHash);
+            }
         }
         @Override
-        public void onEndpointLost(@NonNull String endpointId) {}
+        public void onEndpointLost(@NonNull String endpointId) {
+            // Once linked, onDisconnected is what counts
+            if (endpointId.equals(foundEndpoint) && connectedEndpoint == null) {
+                checkIn.onLinkLost("Lost the professor's signal");
+            }
+        }
     };
 
     private final ConnectionLifecycleCallback connectionLifecycleCallback = new ConnectionLifecycleCallback() {
@@ -102,33 +266,95 @@ public class StudentActivity extends AppCompatActivity {
 
         @Override
         public void onConnectionResult(@NonNull String endpointId, @NonNull ConnectionResolution result) {
+            if (!endpointId.equals(foundEndpoint)) return; // an attempt we've given up on
+            if (handshakeSeal != null) {
+                onHandshakeAnswered(result);
+                return;
+            }
             if (result.getStatus().isSuccess()) {
-                sendAttendanceData(endpointId);
+                timer.mark("connected");
+                connectedEndpoint = endpointId;
+                // Scanning competes with the open link for the radio
+                Nearby.getConnectionsClient(getApplicationContext()).stopDiscovery();
+                checkIn.onConnected();
+                sendWhenReady();
+            } else {
+                checkIn.onLinkLost("Connection failed");
             }
         }
         @Override
-        public void onDisconnected(@NonNull String endpointId) {}
+        public void onDisconnected(@NonNull String endpointId) {
+            if (endpointId.equals(connectedEndpoint)) {
+                connectedEndpoint = null;
+                checkIn.onLinkLost("Disconnected from the professor");
+            }
+        }
     };
 
-    // UPDATED: This now asks the Server FIRST before bothering the Professor
-    private void sendAttendanceData(String endpointId) {
-        String rollNo = etRollNo.getText().toString();
-        String deviceId = Settings.Secure.getString(getContentResolver(), Settings.Secure.ANDROID_ID);
-
-        statusLog.setText("Verifying with Server...");
+    // Fast mode: the professor accepting our request is the ACK, no payload either way
+    private void onHandshakeAnswered(ConnectionResolution result) {
+        int status = result.getStatus().getStatusCode();
+        if (status == ConnectionsStatusCodes.STATUS_OK) {
+            timer.mark("acked");
+            checkIn.onMarked(); // stops the radio, which drops the link
+        } else if (status == ConnectionsStatusCodes.STATUS_CONNECTION_REJECTED) {
+            checkIn.onRefused("Professor did not accept this check-in (already marked, or phone used for another roll no).");
+        } else {
+            checkIn.onLinkLost("Connection failed");
+        }
+    }
 
-        // Start the check.
-        // If SERVER says "Success" -> It will automatically call sendPayloadToProfessor
-        checkAttendanceWithServer(rollNo, deviceId, endpointId);
+    // Sends the moment both the link is up and the server has said yes, whichever comes last
+    private void sendWhenReady() {
+        if (handshakeSeal != null) {
+            if (!verified || payloadSent) return;
+            payloadSent = true;
+            byte[] checkIn = handshakeSeal.seal(encodeCheckIn());
+            Nearby.getConnectionsClient(getApplicationContext())
+                    .requestConnection(checkIn, foundEndpoint, connectionLifecycleCallback);
+            timer.mark("sent");
+            return;
+        }
+        if (connectedEndpoint == null || !verified || payloadSent) {
+            if (connectedEndpoint != null && !verified) statusLog.setText("Connected. Verifying with Server...");
+            return;
+        }
+        payloadSent = true;
+        sendPayloadToProfessor(connectedEndpoint, 0);
+        statusLog.setText("✅ Verified & Sent to Prof!");
+        timer.mark("sent");
+        if (professorVerifies) {
+            statusLog.setText("Sent! Waiting for verification...");
+        }
     }
 
     private final PayloadCallback payloadCallback = new PayloadCallback() {
         @Override
         public void onPayloadReceived(@NonNull String endpointId, @NonNull Payload payload) {
-            String msg = new String(payload.asBytes(), StandardCharsets.UTF_8);
-            if (msg.equals("SUCCESS")) {
-                statusLog.setText("✅ ATTENDANCE MARKED!");
-                Nearby.getConnectionsClient(getApplicationContext()).disconnectFromEndpoint(endpointId);
+            if (!Objects.equals(endpointId, connectedEndpoint)) return;
+            CheckInCodec.Reply reply = CheckInCodec.decodeReply(payload.asBytes());
+            if (reply == null) {
+                // A professor on an older version answers in plain text
+                String msg = new String(payload.asBytes(), StandardCharsets.UTF_8);
+                if (msg.equals("SUCCESS")) {
+                    timer.mark("acked");
+                    checkIn.onMarked(); // stops the radio, which drops the link
+                } else {
+                    checkIn.onRefused(msg + " (Disconnected)");
+                }
+                return;
+            }
+            if (reply.checkInId != checkInId) {
+                TELEMETRY.increment("student.uncorrelated_replies");
+                return; // not the answer to this check-in
+            }
+            if (reply.isMarked()) {
+                timer.mark("acked");
+                recordedAt = reply.serverTime;
+                checkIn.onMarked();
+            } else {
+                // Professor's verification turned us down; the message says why
+                checkIn.onRefused(reply.message + " (Disconnected)");
             }
         }
         @Override
@@ -182,56 +408,61 @@ public class StudentActivity extends AppCompatActivity {
         }
     }
 
-    // --- 4. SERVER CONNECTION (UPDATED FIX) ---
-    private void checkAttendanceWithServer(String uid, String devId, String endpointId) {
-        new Thread(() -> {
-            try {
-                // Your Laptop IP (Make sure this is correct!)
-                String serverIp = "192.168.1.8";
-                String path = "http://" + serverIp + ":8080/api/mark?uid=" + uid + "&devId=" + devId;
-
-                java.net.URL url = new java.net.URL(path);
-                java.net.HttpURLConnection conn = (java.net.HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("GET");
-
-                java.util.Scanner sc = new java.util.Scanner(conn.getInputStream());
-                if (sc.hasNext()) {
-                    String response = sc.nextLine();
-
-                    runOnUiThread(() -> {
-                        // Show server message (Success or Error)
-                        Toast.makeText(StudentActivity.this, response, Toast.LENGTH_LONG).show();
-                        statusLog.setText(response);
-
-                        if (response.toLowerCase().contains("success")) {
-                            // ✅ CASE 1: SUCCESS - Send data to Professor
-                            sendPayloadToProfessor(uid, devId, endpointId);
-                        } else {
-                            // ❌ CASE 2: ERROR (Duplicate/Proxy) - DISCONNECT IMMEDIATELY
-                            // This fixes the issue of getting stuck
-                            Nearby.getConnectionsClient(StudentActivity.this).disconnectFromEndpoint(endpointId);
-                            statusLog.setText(response + " (Disconnected)");
-                        }
-                    });
-                }
-                conn.disconnect();
+    // --- 4. SERVER CONNECTION ---
+    private void checkAttendanceWithServer(String uid, long deviceHash) {
+        // The server keys devices by the same hash the professor sees, never the raw ANDROID_ID
+        String devId = CheckIn.deviceKey(deviceHash);
+
+        // A retap replaces the old attempt instead of stacking another one
+        if (pendingVerification != null) pendingVerification.cancel();
 
-            } catch (Exception e) {
-                e.printStackTrace();
-                runOnUiThread(() -> {
-                    Toast.makeText(StudentActivity.this, "Server Error", Toast.LENGTH_SHORT).show();
-                    // Safe to disconnect here too
-                    Nearby.getConnectionsClient(StudentActivity.this).disconnectFromEndpoint(endpointId);
-                });
+        long requestStart = System.nanoTime();
+        verifying = true;
+        pendingVerification = verificationClient.verify(uid, devId, new VerificationClient.Callback() {
+            @Override
+            public void onVerified(String message) {
+                verifying = false;
+                TELEMETRY.recordSince("student.http_verify", requestStart);
+                timer.mark("verified");
+                Toast.makeText(StudentActivity.this, message, Toast.LENGTH_LONG).show();
+                statusLog.setText(message);
+                // ✅ CASE 1: SUCCESS - Send to Professor as soon as the link is up
+                verified = true;
+                sendWhenReady();
             }
-        }).start();
+
+            @Override
+            public void onRejected(String message) {
+                verifying = false;
+                TELEMETRY.recordSince("student.http_verify", requestStart);
+                // ❌ CASE 2: ERROR (Duplicate/Proxy) - DISCONNECT IMMEDIATELY
+                Toast.makeText(StudentActivity.this, message, Toast.LENGTH_LONG).show();
+                checkIn.onRefused(message + " (Disconnected)");
+            }
+
+            @Override
+            public void onError(Exception error) {
+                verifying = false;
+                TELEMETRY.increment("student.http_errors");
+                Toast.makeText(StudentActivity.this, "Server Error", Toast.LENGTH_SHORT).show();
+                checkIn.fail("Server unreachable. Try again.");
+            }
+        });
     }
 
-    private void sendPayloadToProfessor(String rollNo, String deviceId, String endpointId) {
-        String data = rollNo + "\n(Device: " + deviceId.substring(0,6) + ")";
-        Payload payload = Payload.fromBytes(data.getBytes(StandardCharsets.UTF_8));
+    private byte[] encodeCheckIn() {
+        return CheckInCodec.encode(rollNo, deviceHash, System.currentTimeMillis(), checkInId,
+                CheckInCodec.FLAG_FRAMED_REPLY);
+    }
 
+    // The professor answers a resend like the original, so resending can't add a second row
+    private void sendPayloadToProfessor(String endpointId, int resends) {
+        if (!endpointId.equals(connectedEndpoint) || checkIn.state() != CheckInStateMachine.State.CHECKING_IN) return;
+        if (resends > 0) TELEMETRY.increment("student.resends");
+        Payload payload = Payload.fromBytes(encodeCheckIn());
         Nearby.getConnectionsClient(this).sendPayload(endpointId, payload);
-        statusLog.setText("✅ Verified & Sent to Prof!");
+        if (resends < MAX_RESENDS) {
+            handler.postDelayed(() -> sendPayloadToProfessor(endpointId, resends + 1), RESEND_INTERVAL_MS);
+        }
     }
-}
\ No newline at end of file
+}
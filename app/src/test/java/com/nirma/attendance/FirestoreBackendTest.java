@@ -0,0 +1,31 @@
+package com.nirma.attendance;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FirestoreBackendTest {
+
+    @Test
+    public void plainRollNumbersAreTheirOwnId() {
+        assertEquals("21BCE045", FirestoreBackend.documentId("21BCE045"));
+        assertEquals("a.b_c", FirestoreBackend.documentId("a.b_c"));
+    }
+
+    @Test
+    public void idsAreValidAndNeverShared() {
+        List<String> rolls = Arrays.asList("21/BCE/045", "21_BCE_045", "21%2FBCE%2F045", ".", "..", "%2E",
+                "__name__", "_", "%5F_name__", "r..", "r__x");
+        HashSet<String> ids = new HashSet<>();
+        for (String roll : rolls) {
+            String id = FirestoreBackend.documentId(roll);
+            assertFalse(id, id.contains("/"));
+            assertFalse(id, id.equals(".") || id.equals("..") || id.startsWith("__"));
+            assertTrue(roll + " collides as " + id, ids.add(id));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.nirma.attendance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Cost of turning a received payload into a CheckIn, plain and fast-mode (sealed). */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CheckInDecodeBenchmark {
+
+    private final CheckInIngest ingest = new CheckInIngest();
+    private byte[] payload;
+    private byte[] sealed;
+    private HandshakeSeal seal;
+
+    @Setup
+    public void setUp() {
+        payload = CheckInCodec.encode("21BCE045", CheckInCodec.hashDeviceId("a1b2c3d4e5f60718"),
+                1_700_000_000_000L, 0x1234_5678_9abc_def0L);
+        SessionDescriptor session = new SessionDescriptor("2CS701", 1, 2, 0xffffffffL, SessionDescriptor.FLAG_FAST_CHECK_IN);
+        seal = new HandshakeSeal(session);
+        sealed = new HandshakeSeal(session).seal(payload);
+    }
+
+    @Benchmark
+    public CheckIn decode() {
+        return ingest.decode(payload, 1_700_000_000_500L);
+    }
+
+    @Benchmark
+    public CheckIn openAndDecodeSealed() {
+        int length = seal.open(sealed);
+        return ingest.decode(sealed, length, 1_700_000_000_500L);
+    }
+}
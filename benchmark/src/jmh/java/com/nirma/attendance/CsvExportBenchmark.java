@@ -0,0 +1,47 @@
+package com.nirma.attendance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/** Writing a roster as CSV into memory, i.e. the export without the storage provider. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CsvExportBenchmark {
+
+    @Param({"300", "5000"})
+    public int rows;
+
+    private final ArrayList<CheckIn> roster = new ArrayList<>();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+
+    @Setup
+    public void setUp() {
+        roster.clear();
+        for (int i = 0; i < rows; i++) {
+            roster.add(new CheckIn(String.format("21BCE%04d", i), 0x9e3779b97f4a7c15L * (i + 1), i, 1_700_000_000_000L + i * 1000L));
+        }
+    }
+
+    @Benchmark
+    public int writeCsv() throws IOException {
+        out.reset();
+        try (ExportFormat.RecordWriter writer = ExportFormat.CSV.open(out)) {
+            for (CheckIn checkIn : roster) {
+                writer.write(checkIn);
+            }
+        }
+        return out.size();
+    }
+}
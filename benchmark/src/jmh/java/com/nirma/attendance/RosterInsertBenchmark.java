@@ -0,0 +1,47 @@
+package com.nirma.attendance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the hub does per arrival once decoded: proxy checks, then the roster insert.
+ * One op is a whole class, so the score divided by {@code students} is per check-in.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RosterInsertBenchmark {
+
+    @Param({"60", "300"})
+    public int students;
+
+    private CheckIn[] arrivals;
+
+    @Setup
+    public void setUp() {
+        arrivals = new CheckIn[students];
+        for (int i = 0; i < students; i++) {
+            arrivals[i] = new CheckIn(String.format("21BCE%03d", i), 0x9e3779b97f4a7c15L * (i + 1), i, 1_700_000_000_000L + i);
+        }
+    }
+
+    @Benchmark
+    public Roster insertClass() {
+        Roster roster = new Roster();
+        ProxyGuard guard = new ProxyGuard();
+        for (CheckIn checkIn : arrivals) {
+            if (guard.admit(checkIn) == ProxyGuard.Verdict.ACCEPT) {
+                roster.add(checkIn);
+            }
+        }
+        return roster;
+    }
+}
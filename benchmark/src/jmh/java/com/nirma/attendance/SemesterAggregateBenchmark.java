@@ -0,0 +1,65 @@
+package com.nirma.attendance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/** A semester of CSV exports (in memory, so this is parsing and tallying, not storage). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SemesterAggregateBenchmark {
+
+    @Param({"200"})
+    public int sessions;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private final ArrayList<SemesterAggregator.Source> sources = new ArrayList<>();
+    private ExecutorService pool;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(1);
+        sources.clear();
+        for (int s = 0; s < sessions; s++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ExportFormat.RecordWriter writer = ExportFormat.CSV.open(bytes)) {
+                for (int i = 0; i < 300; i++) {
+                    if (random.nextInt(100) < 85) {
+                        writer.write(new CheckIn(String.format("21BCE%03d", i), 0x9e3779b97f4a7c15L * (i + 1), i, 1_700_000_000_000L));
+                    }
+                }
+            }
+            byte[] csv = bytes.toByteArray();
+            sources.add(SemesterAggregator.csv("s" + s, () -> new ByteArrayInputStream(csv)));
+        }
+        pool = Executors.newFixedThreadPool(Math.max(1, threads - 1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public int aggregate() throws InterruptedException {
+        return new SemesterAggregator(pool, threads).aggregate(sources, null).students();
+    }
+}
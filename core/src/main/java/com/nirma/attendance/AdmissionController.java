@@ -0,0 +1,188 @@
+package com.nirma.attendance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Decides which students get one of the hub's limited connection slots. At most
+ * {@code maxActive} endpoints are accepted at once; the rest wait in FIFO order and are
+ * accepted as slots free up. Slots are freed by the professor's side as soon as the
+ * reply has been delivered, and reclaimed from endpoints that wait, idle or sit on an
+ * undelivered reply for too long. Time is passed in so tests can drive it; the caller
+ * should {@link #tick} about once a second. Single-threaded.
+ */
+public class AdmissionController {
+
+    /** What the controller asks the transport to do. */
+    public interface Hub {
+        void accept(String endpointId);
+        void reject(String endpointId);
+        void disconnect(String endpointId);
+    }
+
+    private enum State { WAITING, ACCEPTED, REPLIED }
+
+    private static final class Endpoint {
+        final String id;
+        State state = State.WAITING;
+        long since;          // when the current state's timer started
+        long replyPayloadId;
+
+        Endpoint(String id, long now) {
+            this.id = id;
+            this.since = now;
+        }
+    }
+
+    private final Hub hub;
+    private final int maxActive;
+    private final long queueTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long ackTimeoutMillis;
+
+    private final HashMap<String, Endpoint> endpoints = new HashMap<>();
+    private final ArrayDeque<Endpoint> waiting = new ArrayDeque<>();
+    private int active;
+    private long rejected;
+    private long lastNow; // latest time we were told, for events that don't carry one
+    private long timedOut;
+
+    public AdmissionController(Hub hub, int maxActive, long queueTimeoutMillis,
+                               long idleTimeoutMillis, long ackTimeoutMillis) {
+        this.hub = hub;
+        this.maxActive = maxActive;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+    }
+
+    public void onConnectionInitiated(String endpointId, long now) {
+        lastNow = now;
+        if (endpoints.containsKey(endpointId)) return;
+        Endpoint endpoint = new Endpoint(endpointId, now);
+        endpoints.put(endpointId, endpoint);
+        if (active < maxActive) {
+            admit(endpoint, now);
+        } else {
+            waiting.add(endpoint);
+        }
+    }
+
+    /** The connection failed or was refused on the other side. */
+    public void onConnectionFailed(String endpointId) {
+        release(endpointId);
+    }
+
+    /** Anything arrived from the endpoint; restarts its idle timer. */
+    public void onActivity(String endpointId, long now) {
+        lastNow = now;
+        Endpoint endpoint = endpoints.get(endpointId);
+        if (endpoint != null && endpoint.state == State.ACCEPTED) {
+            endpoint.since = now;
+        }
+    }
+
+    /** The final reply (ACK or rejection) was handed to the transport as {@code payloadId}. */
+    public void onReplySent(String endpointId, long payloadId, long now) {
+        lastNow = now;
+        Endpoint endpoint = endpoints.get(endpointId);
+        if (endpoint != null && endpoint.state != State.WAITING) {
+            endpoint.state = State.REPLIED;
+            endpoint.replyPayloadId = payloadId;
+            endpoint.since = now;
+        }
+    }
+
+    /** A payload reached the endpoint. If it was the reply, hang up and hand the slot on. */
+    public void onPayloadDelivered(String endpointId, long payloadId) {
+        Endpoint endpoint = endpoints.get(endpointId);
+        if (endpoint != null && endpoint.state == State.REPLIED && endpoint.replyPayloadId == payloadId) {
+            hub.disconnect(endpointId);
+            release(endpointId);
+        }
+    }
+
+    public void onDisconnected(String endpointId) {
+        release(endpointId);
+    }
+
+    /** Rejects stale waiters and disconnects idle or unacknowledged endpoints. */
+    public void tick(long now) {
+        lastNow = now;
+        Iterator<Endpoint> queued = waiting.iterator();
+        while (queued.hasNext()) {
+            Endpoint endpoint = queued.next();
+            if (now - endpoint.since >= queueTimeoutMillis) {
+                queued.remove();
+                endpoints.remove(endpoint.id);
+                rejected++;
+                hub.reject(endpoint.id);
+            }
+        }
+
+        ArrayList<String> expired = null;
+        for (Endpoint endpoint : endpoints.values()) {
+            long limit = endpoint.state == State.ACCEPTED ? idleTimeoutMillis
+                    : endpoint.state == State.REPLIED ? ackTimeoutMillis : Long.MAX_VALUE;
+            if (now - endpoint.since >= limit) {
+                if (expired == null) expired = new ArrayList<>();
+                expired.add(endpoint.id);
+            }
+        }
+        if (expired != null) {
+            for (String id : expired) {
+                timedOut++;
+                hub.disconnect(id);
+                release(id);
+            }
+        }
+    }
+
+    /** Forgets every endpoint and the totals, e.g. when the session stops. */
+    public void reset() {
+        endpoints.clear();
+        waiting.clear();
+        active = 0;
+        rejected = 0;
+        timedOut = 0;
+    }
+
+    public int activeCount() {
+        return active;
+    }
+
+    public int queuedCount() {
+        return waiting.size();
+    }
+
+    public long rejectedCount() {
+        return rejected;
+    }
+
+    public long timedOutCount() {
+        return timedOut;
+    }
+
+    private void admit(Endpoint endpoint, long now) {
+        endpoint.state = State.ACCEPTED;
+        endpoint.since = now;
+        active++;
+        hub.accept(endpoint.id);
+    }
+
+    private void release(String endpointId) {
+        Endpoint endpoint = endpoints.remove(endpointId);
+        if (endpoint == null) return;
+        if (endpoint.state == State.WAITING) {
+            waiting.remove(endpoint);
+            return;
+        }
+        active--;
+        Endpoint next = waiting.poll();
+        if (next != null) {
+            admit(next, lastNow);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.nirma.attendance;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * The professor's half of a session, independent of the radio: admits connections,
+ * decodes check-ins (as payloads or, in fast mode, inside the connection request), runs
+ * the class list and proxy checks, optionally hands them to a {@link BatchVerifier}, and sends the
+ * ACK or rejection. What to do with a recorded check-in (roster, journal, UI) is up to
+ * the {@link Listener}. Single-threaded, like the transport callbacks.
+ *
+ * Check-ins are idempotent: a resend of one already recorded is answered again with the
+ * original record's time and never reaches the listener twice, and a resend that arrives
+ * while the server is still judging the original waits for that verdict. Students that ask
+ * for it get a {@link CheckInCodec.Reply} carrying their check-in id.
+ */
+public final class AttendanceHub implements Transport.Listener {
+
+    static final String NOT_ENROLLED = "Error: this roll number is not on the class list for this course";
+    static final String SESSION_STOPPED = "Error: the session stopped before this check-in was confirmed";
+
+    public interface Listener {
+        /** Passed the local proxy checks; a server verdict may still follow. */
+        void onAdmitted(CheckIn checkIn);
+
+        /** Record it: the student has been, or is being, told they are marked. */
+        void onAccepted(CheckIn checkIn);
+
+        /** The server turned down a check-in that was admitted earlier, or the session stopped before it answered. */
+        void onRefused(CheckIn checkIn, String message);
+    }
+
+    private final Transport transport;
+    private final Listener listener;
+    private final LongSupplier clock; // millis, monotonic
+    private final SessionTelemetry telemetry;
+    private final AdmissionController admission;
+    private final CheckInIngest ingest = new CheckInIngest();
+    private final ProxyGuard proxyGuard = new ProxyGuard();
+    private final HashMap<String, Long> arrivedAt = new HashMap<>(); // endpoint -> clock at its request
+    // Fast-mode students: the accept/reject of their connection request is the ACK
+    private final HashSet<String> handshakeEndpoints = new HashSet<>();
+    private final HashSet<String> framedEndpoints = new HashSet<>(); // next reply is a CheckInCodec.Reply
+    // Roll numbers with the BatchVerifier -> resends waiting on the same verdict
+    private final HashMap<String, ArrayList<Waiter>> awaitingVerdict = new HashMap<>();
+    private HandshakeSeal handshakeSeal; // set while a fast-mode session is advertised
+    private BatchVerifier batchVerifier; // only while a hub-verified session is live
+    private EnrolmentIndex enrolment; // null when no class list was imported
+
+    public AttendanceHub(Transport transport, Listener listener, LongSupplier clock, SessionTelemetry telemetry,
+                         int maxActive, long queueTimeoutMillis, long idleTimeoutMillis, long ackTimeoutMillis) {
+        this.transport = transport;
+        this.listener = listener;
+        this.clock = clock;
+        this.telemetry = telemetry;
+        this.admission = new AdmissionController(transport, maxActive, queueTimeoutMillis, idleTimeoutMillis, ackTimeoutMillis);
+    }
+
+    /** Accept fast-mode check-ins sealed for this advert, or stop accepting them with null. */
+    public void setHandshakeSeal(HandshakeSeal seal) {
+        this.handshakeSeal = seal;
+    }
+
+    /**
+     * Verify admitted check-ins through {@code verifier} before recording them, or record
+     * them straight away with null. Its listener must call {@link #onVerdict}.
+     */
+    public void setBatchVerifier(BatchVerifier verifier) {
+        this.batchVerifier = verifier;
+    }
+
+    /**
+     * Refuse roll numbers that aren't on {@code enrolment} and mark accepted ones present
+     * in it, or take anyone with null. Check-ins accepted before this call aren't marked.
+     */
+    public void setEnrolment(EnrolmentIndex enrolment) {
+        this.enrolment = enrolment;
+    }
+
+    /** A check-in recovered from the journal, so a retry of it is answered as a repeat. */
+    public void restore(CheckIn checkIn) {
+        proxyGuard.restore(checkIn);
+        if (enrolment != null) enrolment.markPresent(checkIn.rollNo);
+    }
+
+    /** Call about once a second. */
+    public void tick() {
+        admission.tick(clock.getAsLong());
+        telemetry.peak("hub.active_endpoints", admission.activeCount());
+        telemetry.peak("hub.queued_endpoints", admission.queuedCount());
+        // Running totals, so the peak is the latest value
+        telemetry.peak("hub.rejected_when_full", admission.rejectedCount());
+        telemetry.peak("hub.timed_out", admission.timedOutCount());
+    }
+
+    /**
+     * Forgets every connection, e.g. when the professor stops the session. Recorded check-ins
+     * stay; ones still waiting for a server verdict are dropped, so a retry is judged afresh.
+     */
+    public void reset() {
+        for (String rollNo : awaitingVerdict.keySet()) {
+            // The verifier is gone and nobody was told they're marked; free the roll again
+            CheckIn pending = proxyGuard.admitted(rollNo);
+            proxyGuard.release(pending);
+            listener.onRefused(pending, SESSION_STOPPED);
+        }
+        admission.reset();
+        handshakeEndpoints.clear();
+        framedEndpoints.clear();
+        awaitingVerdict.clear();
+        arrivedAt.clear();
+        handshakeSeal = null;
+    }
+
+    public int activeCount() {
+        return admission.activeCount();
+    }
+
+    public int queuedCount() {
+        return admission.queuedCount();
+    }
+
+    // --- TRANSPORT EVENTS ---
+    @Override
+    public void onConnectionRequested(String endpointId, byte[] endpointInfo) {
+        long now = clock.getAsLong();
+        arrivedAt.put(endpointId, now);
+        telemetry.increment("hub.connection_requests");
+        if (handshakeSeal != null && isCheckInFrame(endpointInfo)) {
+            // Fast mode: the request carries the check-in, so no slot or data channel is needed
+            handshakeEndpoints.add(endpointId);
+            telemetry.increment("hub.fast_check_ins");
+            int length = handshakeSeal.open(endpointInfo);
+            CheckIn checkIn = length < 0 ? null : ingest.decode(endpointInfo, length, System.currentTimeMillis());
+            if (checkIn == null) {
+                refuse(endpointId, null, "Check-in is not for this session"); // stale advert or tampered
+            } else {
+                onCheckIn(endpointId, checkIn);
+            }
+            return;
+        }
+        // Accepted now if a slot is free, otherwise queued until one is
+        admission.onConnectionInitiated(endpointId, now);
+    }
+
+    @Override
+    public void onConnectionResult(String endpointId, boolean connected) {
+        if (handshakeEndpoints.remove(endpointId)) {
+            // The accept was the ACK; nothing else to say, so hang up straight away
+            if (connected) transport.disconnect(endpointId);
+            return;
+        }
+        if (connected) {
+            admission.onActivity(endpointId, clock.getAsLong());
+        } else {
+            admission.onConnectionFailed(endpointId);
+        }
+    }
+
+    @Override
+    public void onPayload(String endpointId, byte[] data) {
+        long now = clock.getAsLong();
+        admission.onActivity(endpointId, now);
+
+        Long arrived = arrivedAt.get(endpointId);
+        if (arrived != null) telemetry.recordMicros("hub.request_to_payload", (now - arrived) * 1000);
+        long decodeStart = System.nanoTime();
+        CheckIn checkIn = ingest.decode(data, System.currentTimeMillis());
+        telemetry.recordSince("hub.decode", decodeStart);
+        if (checkIn == null) {
+            // Not a check-in we understand (e.g. an old app version), so don't ACK it
+            transport.disconnect(endpointId);
+            admission.onDisconnected(endpointId);
+            return;
+        }
+        // Per check-in: Nearby reuses endpoint ids, and a resend sets it again for its own reply
+        if (ingest.wantsFramedReply()) {
+            framedEndpoints.add(endpointId);
+        } else {
+            framedEndpoints.remove(endpointId);
+        }
+        onCheckIn(endpointId, checkIn);
+    }
+
+    @Override
+    public void onPayloadDelivered(String endpointId, long payloadId) {
+        // Once our reply is through we hang up ourselves, freeing the slot right away
+        admission.onPayloadDelivered(endpointId, payloadId);
+    }
+
+    @Override
+    public void onDisconnected(String endpointId) {
+        handshakeEndpoints.remove(endpointId);
+        framedEndpoints.remove(endpointId);
+        arrivedAt.remove(endpointId);
+        admission.onDisconnected(endpointId);
+    }
+
+    /** The answer for a check-in handed to the {@link BatchVerifier}. */
+    public void onVerdict(String endpointId, CheckIn checkIn, boolean accepted, String message) {
+        if (proxyGuard.admitted(checkIn.rollNo) != checkIn || !awaitingVerdict.containsKey(checkIn.rollNo)) {
+            // From a batch in flight when the session stopped: reset() let it go, and a retry may
+            // since have been admitted and submitted in its place
+            telemetry.increment("hub.stale_verdicts");
+            return;
+        }
+        ArrayList<Waiter> resends = awaitingVerdict.remove(checkIn.rollNo);
+        if (!accepted) {
+            telemetry.increment("hub.server_rejected");
+            proxyGuard.release(checkIn);
+            listener.onRefused(checkIn, message);
+            refuse(endpointId, checkIn, message);
+            for (Waiter waiter : resends) {
+                if (!waiter.endpointId.equals(endpointId)) refuse(waiter.endpointId, waiter.checkIn, message);
+            }
+            return;
+        }
+        record(checkIn);
+        acknowledge(endpointId, checkIn, checkIn, false);
+        for (Waiter waiter : resends) {
+            // A resend on the original link has just been answered
+            if (!waiter.endpointId.equals(endpointId)) acknowledge(waiter.endpointId, waiter.checkIn, checkIn, true);
+        }
+    }
+
+    // --- CHECK-INS ---
+    private static boolean isCheckInFrame(byte[] endpointInfo) {
+        // Slow-mode students send a plain name here
+        return endpointInfo != null && endpointInfo.length > 2
+                && endpointInfo[0] == CheckInCodec.MAGIC_0 && endpointInfo[1] == CheckInCodec.MAGIC_1;
+    }
+
+    private void onCheckIn(String endpointId, CheckIn checkIn) {
+        if (enrolment != null && !enrolment.isEnrolled(checkIn.rollNo)) {
+            telemetry.increment("hub.verdict.not_enrolled");
+            refuse(endpointId, checkIn, NOT_ENROLLED);
+            return;
+        }
+        // Settled locally in O(1) before the roster or the server ever see it
+        ProxyGuard.Verdict verdict = proxyGuard.admit(checkIn);
+        telemetry.increment("hub.verdict." + verdict.name().toLowerCase(Locale.ROOT));
+        if (verdict == ProxyGuard.Verdict.REPEAT) {
+            CheckIn first = proxyGuard.admitted(checkIn.rollNo);
+            if (first.nonce == checkIn.nonce) telemetry.increment("hub.resends");
+            ArrayList<Waiter> waiting = awaitingVerdict.get(checkIn.rollNo);
+            if (waiting != null) {
+                // Not marked yet; the answer to the original is the answer to this
+                waiting.add(new Waiter(endpointId, checkIn));
+            } else {
+                acknowledge(endpointId, checkIn, first, true); // the roster keeps the first arrival
+            }
+            return;
+        }
+        if (verdict != ProxyGuard.Verdict.ACCEPT) {
+            refuse(endpointId, checkIn, ProxyGuard.describe(verdict));
+            return;
+        }
+        listener.onAdmitted(checkIn);
+
+        if (batchVerifier != null) {
+            // Answered from onVerdict once the batch comes back
+            awaitingVerdict.put(checkIn.rollNo, new ArrayList<>(0));
+            batchVerifier.submit(endpointId, checkIn);
+        } else {
+            record(checkIn);
+            acknowledge(endpointId, checkIn, checkIn, false);
+        }
+    }
+
+    private void record(CheckIn checkIn) {
+        if (enrolment != null) enrolment.markPresent(checkIn.rollNo);
+        listener.onAccepted(checkIn);
+    }
+
+    /** Answers {@code request}, which {@code recorded} marked (the same check-in unless a repeat). */
+    private void acknowledge(String endpointId, CheckIn request, CheckIn recorded, boolean repeat) {
+        Long arrived = arrivedAt.remove(endpointId);
+        if (arrived != null) telemetry.recordMicros("hub.ack_latency", (clock.getAsLong() - arrived) * 1000);
+        if (handshakeEndpoints.contains(endpointId)) {
+            transport.accept(endpointId);
+        } else if (framedEndpoints.remove(endpointId)) {
+            sendReply(endpointId, CheckInCodec.encodeReply(
+                    repeat ? CheckInCodec.Reply.ALREADY_MARKED : CheckInCodec.Reply.MARKED,
+                    request.nonce, recorded.timestampMillis, null));
+        } else {
+            sendReply(endpointId, CheckInIngest.ACK_BYTES);
+        }
+    }
+
+    /** @param request the check-in being refused, or null if it couldn't be read */
+    private void refuse(String endpointId, CheckIn request, String message) {
+        Long arrived = arrivedAt.remove(endpointId);
+        if (arrived != null) telemetry.recordMicros("hub.reject_latency", (clock.getAsLong() - arrived) * 1000);
+        if (handshakeEndpoints.remove(endpointId)) {
+            // A rejected request can't carry a reason; the student shows a generic one
+            transport.reject(endpointId);
+        } else if (framedEndpoints.remove(endpointId) && request != null) {
+            sendReply(endpointId, CheckInCodec.encodeReply(CheckInCodec.Reply.REFUSED, request.nonce, 0L, message));
+        } else {
+            sendReply(endpointId, message.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void sendReply(String endpointId, byte[] reply) {
+        long payloadId = transport.send(endpointId, reply);
+        admission.onReplySent(endpointId, payloadId, clock.getAsLong());
+    }
+
+    private static final class Waiter {
+        final String endpointId;
+        final CheckIn checkIn;
+
+        Waiter(String endpointId, CheckIn checkIn) {
+            this.endpointId = endpointId;
+            this.checkIn = checkIn;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.nirma.attendance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of the check-ins in a session, so a killed or recreated professor
+ * screen can rebuild its roster. {@link #append} only queues the record; a background
+ * writer drains whatever has queued up, writes it in one go and fsyncs once for the
+ * whole group. Layout:
+ *
+ * <pre>
+ *   header  'P' 'A' 'J' version(1)
+ *   record  len(1) | rollLen(1) rollNo deviceHash(8) nonce(8) timestamp(8) | crc32(4)
+ * </pre>
+ *
+ * A torn last record (crash mid-write) fails its CRC; replay stops there and the next
+ * {@link #open} cuts it off before appending. Safe to append from many threads; a caller
+ * that must not answer before its record is on disk waits with {@link #awaitDurable}.
+ *
+ * If a write or sync fails, the journal cuts the file back to the last synced record and
+ * stops: nothing appended from then on is written, {@link #awaitDurable} returns false
+ * for it straight away, and {@link #failure} says why. Reopen the file to carry on.
+ */
+public class AttendanceJournal implements Closeable {
+
+    private static final byte[] HEADER = {'P', 'A', 'J', 1};
+    private static final int MAX_RECORD = 1 + CheckInCodec.MAX_ROLL_BYTES + 24;
+
+    public interface Listener {
+        /** Called on the writer thread after the journal failed to write or sync. */
+        void onJournalError(IOException error);
+    }
+
+    private final File file;
+    private final FileOutputStream fileOut;
+    private long syncedLength; // file length up to the last synced record; writer thread only
+    private volatile IOException failure;
+    private final BufferedOutputStream out;
+    private final ConcurrentLinkedQueue<CheckIn> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicLong durableCount = new AtomicLong();
+    private long appendedCount; // guarded by queue, so sequence numbers follow queue order
+    // Not a monitor: waiters may be virtual threads, which a synchronized wait would pin
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableAdvanced = durableLock.newCondition();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CRC32 crc = new CRC32();
+    private final byte[] record = new byte[1 + MAX_RECORD + 4];
+    private volatile Listener listener;
+
+    private AttendanceJournal(File file, long validLength, long existingRecords,
+                              UnaryOperator<OutputStream> wrap) throws IOException {
+        this.file = file;
+        if (validLength < HEADER.length) {
+            try (FileOutputStream fresh = new FileOutputStream(file, false)) {
+                fresh.write(HEADER);
+                fresh.getFD().sync();
+            }
+        } else if (validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        this.fileOut = new FileOutputStream(file, true);
+        this.syncedLength = Math.max(validLength, HEADER.length);
+        this.out = new BufferedOutputStream(wrap.apply(fileOut), 8 * 1024);
+        this.durableCount.set(existingRecords);
+        this.appendedCount = existingRecords;
+    }
+
+    /** Opens {@code file} for appending, creating it if needed and dropping a torn tail. */
+    public static AttendanceJournal open(File file) throws IOException {
+        return open(file, UnaryOperator.identity());
+    }
+
+    /** {@link #open} with the file's stream wrapped by {@code wrap}, e.g. to fail writes in a test. */
+    static AttendanceJournal open(File file, UnaryOperator<OutputStream> wrap) throws IOException {
+        long[] scan = {0, 0};
+        if (file.exists()) {
+            scan = scan(file, null);
+        }
+        return new AttendanceJournal(file, scan[0], scan[1], wrap);
+    }
+
+    public interface Visitor {
+        void onCheckIn(CheckIn checkIn);
+    }
+
+    /** Reads every intact record in order. Returns how many there were; a missing file has none. */
+    public static int replay(File file, Visitor visitor) throws IOException {
+        if (!file.exists()) return 0;
+        return (int) scan(file, visitor)[1];
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues the check-in and returns immediately with its sequence number, which counts
+     * every record in the file including those found by {@link #open}.
+     */
+    public long append(CheckIn checkIn) {
+        long sequence;
+        synchronized (queue) {
+            sequence = ++appendedCount;
+            queue.add(checkIn);
+        }
+        if (drainScheduled.compareAndSet(false, true)) {
+            writer.execute(this::drain);
+        }
+        return sequence;
+    }
+
+    /**
+     * Blocks until the record with this sequence number has been fsynced. Returns false if
+     * that took longer than {@code timeoutMillis}, e.g. because the disk is failing.
+     */
+    public boolean awaitDurable(long sequence, long timeoutMillis) throws InterruptedException {
+        if (durableCount.get() >= sequence) return true;
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        durableLock.lock();
+        try {
+            while (durableCount.get() < sequence) {
+                if (remaining <= 0 || failure != null) return false;
+                remaining = durableAdvanced.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /** Why the journal stopped writing, or null while it is healthy. */
+    public IOException failure() {
+        return failure;
+    }
+
+    /** Records that have reached the disk (fsynced), including those found by {@link #open}. */
+    public long durableCount() {
+        return durableCount.get();
+    }
+
+    /** Records appended so far, durable or not: what the file holds once the writer catches up. */
+    public long appendedCount() {
+        synchronized (queue) {
+            return appendedCount;
+        }
+    }
+
+    /**
+     * Writes and syncs everything queued so far, closes the file and stops the writer, all on
+     * the writer thread; returns at once, so it's safe on the main thread. Errors go to the
+     * {@link Listener}. The file may be renamed meanwhile: the writes follow it.
+     */
+    public void closeAsync() {
+        writer.execute(() -> {
+            drain();
+            try {
+                // After a failure the buffer may hold part of a record; it must not reach the file
+                if (failure == null) {
+                    out.close();
+                } else {
+                    fileOut.close();
+                }
+            } catch (IOException e) {
+                Listener l = listener;
+                if (l != null) l.onJournalError(e);
+            }
+        });
+        writer.shutdown();
+    }
+
+    /** Waits up to {@code timeoutMillis} for {@link #closeAsync} to finish. Returns false on timeout. */
+    public boolean awaitClosed(long timeoutMillis) throws InterruptedException {
+        return writer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@link #closeAsync} and waits for it, up to 5 s for a slow disk. Not for the main thread.
+     */
+    @Override
+    public void close() throws IOException {
+        closeAsync();
+        try {
+            if (!awaitClosed(5_000)) throw new IOException("Journal still syncing after 5 s: " + file);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        if (failure != null) {
+            queue.clear(); // never written; their waiters already know
+            return;
+        }
+        int written = 0;
+        long bytes = 0;
+        try {
+            CheckIn checkIn;
+            while ((checkIn = queue.poll()) != null) {
+                bytes += write(checkIn);
+                written++;
+            }
+            if (written > 0) {
+                out.flush();
+                fileOut.getFD().sync(); // one fsync for the whole group
+                syncedLength += bytes;
+                durableCount.addAndGet(written);
+                signalWaiters();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Stops for good. The records of the failed group are lost, so sequence numbers from here
+     * on would never match the file; cutting back to the last synced record leaves it clean.
+     */
+    private void fail(IOException e) {
+        try {
+            fileOut.getChannel().truncate(syncedLength);
+            fileOut.getFD().sync();
+        } catch (IOException cut) {
+            e.addSuppressed(cut); // the next open drops the torn tail by its CRC anyway
+        }
+        failure = e;
+        queue.clear();
+        signalWaiters();
+        Listener l = listener;
+        if (l != null) l.onJournalError(e);
+    }
+
+    private void signalWaiters() {
+        durableLock.lock();
+        try {
+            durableAdvanced.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /** Returns the bytes written. */
+    private int write(CheckIn checkIn) throws IOException {
+        byte[] roll = checkIn.rollNo.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + roll.length + 24;
+        record[0] = (byte) length;
+        record[1] = (byte) roll.length;
+        System.arraycopy(roll, 0, record, 2, roll.length);
+        int pos = 2 + roll.length;
+        CheckInCodec.putLong(record, pos, checkIn.deviceHash);
+        CheckInCodec.putLong(record, pos + 8, checkIn.nonce);
+        CheckInCodec.putLong(record, pos + 16, checkIn.timestampMillis);
+        crc.reset();
+        crc.update(record, 1, length);
+        int value = (int) crc.getValue();
+        pos += 24;
+        record[pos] = (byte) (value >>> 24);
+        record[pos + 1] = (byte) (value >>> 16);
+        record[pos + 2] = (byte) (value >>> 8);
+        record[pos + 3] = (byte) value;
+        out.write(record, 0, pos + 4);
+        return pos + 4;
+    }
+
+    /** Returns {valid length in bytes, record count}. */
+    private static long[] scan(File file, Visitor visitor) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 16 * 1024))) {
+            byte[] header = new byte[HEADER.length];
+            try {
+                in.readFully(header);
+            } catch (EOFException e) {
+                return new long[]{0, 0};
+            }
+            for (int i = 0; i < HEADER.length; i++) {
+                if (header[i] != HEADER[i]) throw new IOException("Not an attendance journal: " + file);
+            }
+            long valid = HEADER.length;
+            long count = 0;
+            byte[] body = new byte[MAX_RECORD];
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length = in.read();
+                if (length < 0) break;
+                if (length < 25 || length > MAX_RECORD) break;
+                int stored;
+                try {
+                    in.readFully(body, 0, length);
+                    stored = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(body, 0, length);
+                if ((int) crc.getValue() != stored) break;
+                int rollLength = body[0] & 0xff;
+                if (rollLength + 25 != length) break;
+                if (visitor != null) {
+                    String rollNo = new String(body, 1, rollLength, StandardCharsets.UTF_8);
+                    int pos = 1 + rollLength;
+                    visitor.onCheckIn(new CheckIn(rollNo, CheckInCodec.getLong(body, pos),
+                            CheckInCodec.getLong(body, pos + 8), CheckInCodec.getLong(body, pos + 16)));
+                }
+                valid += 1 + length + 4;
+                count++;
+            }
+            return new long[]{valid, count};
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.nirma.attendance;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with full jitter: the n-th retry waits a random time in
+ * [0, min(max, base * 2^n)], so clients that failed together don't retry together.
+ */
+public final class Backoff {
+
+    private final long baseMillis;
+    private final long maxMillis;
+    private final Random random;
+
+    public Backoff(long baseMillis, long maxMillis, Random random) {
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+        this.random = random;
+    }
+
+    /** Delay before retry number {@code attempt}, counting from 0. */
+    public long delayMillis(int attempt) {
+        long ceiling = ceilingMillis(attempt);
+        return ceiling <= 0 ? 0 : (long) (random.nextDouble() * (ceiling + 1));
+    }
+
+    /** Upper bound of {@link #delayMillis(int)}, without jitter. */
+    public long ceilingMillis(int attempt) {
+        int shift = Math.min(Math.max(attempt, 0), 30);
+        return Math.min(maxMillis, baseMillis << shift);
+    }
+}
@@ -0,0 +1,116 @@
+package com.nirma.attendance;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects check-ins on the professor's phone and verifies them with the server in
+ * micro-batches: a batch goes out when it reaches {@code maxBatch} entries or
+ * {@code maxDelayMillis} after its first entry, whichever comes first. Batches are sent one
+ * at a time from a single worker, so arrivals during a slow request simply join the
+ * next batch. Verdicts come back per check-in on {@code callbackExecutor}.
+ */
+public class BatchVerifier {
+
+    public interface Backend {
+        /** Returns one verdict line per check-in, in order. A line containing "success" accepts. */
+        List<String> verify(List<CheckIn> batch) throws IOException;
+    }
+
+    public interface Listener {
+        void onVerdict(String endpointId, CheckIn checkIn, boolean accepted, String message);
+    }
+
+    private final Backend backend;
+    private final int maxBatch;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService worker;
+    private final Executor callbackExecutor;
+    private final Listener listener;
+
+    private final Object lock = new Object();
+    private ArrayList<String> pendingEndpoints = new ArrayList<>();
+    private ArrayList<CheckIn> pendingCheckIns = new ArrayList<>();
+    private boolean flushScheduled;
+
+    public BatchVerifier(Backend backend, int maxBatch, long maxDelayMillis,
+                         ScheduledExecutorService worker, Executor callbackExecutor, Listener listener) {
+        this.backend = backend;
+        this.maxBatch = maxBatch;
+        this.maxDelayMillis = maxDelayMillis;
+        this.worker = worker;
+        this.callbackExecutor = callbackExecutor;
+        this.listener = listener;
+    }
+
+    /** Queues a check-in. Never blocks; safe to call from the Nearby callback. */
+    public void submit(String endpointId, CheckIn checkIn) {
+        synchronized (lock) {
+            pendingEndpoints.add(endpointId);
+            pendingCheckIns.add(checkIn);
+            if (pendingCheckIns.size() >= maxBatch) {
+                worker.execute(this::flush);
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                worker.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    public int pendingCount() {
+        synchronized (lock) {
+            return pendingCheckIns.size();
+        }
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private void flush() {
+        while (true) {
+            ArrayList<String> endpoints;
+            ArrayList<CheckIn> batch;
+            synchronized (lock) {
+                if (pendingCheckIns.isEmpty()) {
+                    flushScheduled = false;
+                    return;
+                }
+                endpoints = pendingEndpoints;
+                batch = pendingCheckIns;
+                if (batch.size() > maxBatch) {
+                    // Split off exactly one batch and leave the rest queued
+                    pendingEndpoints = new ArrayList<>(endpoints.subList(maxBatch, endpoints.size()));
+                    pendingCheckIns = new ArrayList<>(batch.subList(maxBatch, batch.size()));
+                    endpoints = new ArrayList<>(endpoints.subList(0, maxBatch));
+                    batch = new ArrayList<>(batch.subList(0, maxBatch));
+                } else {
+                    pendingEndpoints = new ArrayList<>();
+                    pendingCheckIns = new ArrayList<>();
+                }
+            }
+            send(endpoints, batch);
+        }
+    }
+
+    private void send(List<String> endpoints, List<CheckIn> batch) {
+        List<String> verdicts;
+        try {
+            verdicts = backend.verify(batch);
+        } catch (IOException e) {
+            verdicts = null;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            String endpointId = endpoints.get(i);
+            CheckIn checkIn = batch.get(i);
+            String message = verdicts == null ? "Error: server unreachable, try again" : verdicts.get(i);
+            boolean accepted = verdicts != null && message.toLowerCase(Locale.ROOT).contains("success");
+            callbackExecutor.execute(() -> listener.onVerdict(endpointId, checkIn, accepted, message));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.nirma.attendance;
+
+/**
+ * One student check-in as the professor received it. Immutable, so the roster
+ * can hand the same instance to the UI and the exporter without copying.
+ */
+public final class CheckIn {
+
+    public final String rollNo;
+    public final long deviceHash;      // CheckInCodec.hashDeviceId of the student's ANDROID_ID
+    public final long nonce;           // picked by the student, unique per check-in; its id in replies
+    public final long timestampMillis; // epoch millis on arrival, formatted only when shown
+
+    public CheckIn(String rollNo, long deviceHash, long nonce, long timestampMillis) {
+        this.rollNo = rollNo;
+        this.deviceHash = deviceHash;
+        this.nonce = nonce;
+        this.timestampMillis = timestampMillis;
+    }
+
+    /** Short device label for lists and exports, e.g. "3f9a02c1". */
+    public String deviceTag() {
+        return deviceTag(deviceHash);
+    }
+
+    /** Full hash as 16 hex digits; this is the devId the attendance server sees. */
+    public static String deviceKey(long deviceHash) {
+        String hex = Long.toHexString(deviceHash);
+        return hex.length() >= 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    public static String deviceTag(long deviceHash) {
+        String hex = Long.toHexString(deviceHash >>> 32);
+        return hex.length() >= 8 ? hex : "00000000".substring(hex.length()) + hex;
+    }
+}
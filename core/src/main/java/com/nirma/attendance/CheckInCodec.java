@@ -0,0 +1,202 @@
+package com.nirma.attendance;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format for the check-in a student sends to the professor. Big-endian:
+ *
+ * <pre>
+ *   0  magic       'P' 'A'
+ *   2  version     1
+ *   3  flags       {@link #FLAG_FRAMED_REPLY}, other bits 0 (a frame with others set is refused)
+ *   4  rollLen     1..MAX_ROLL_BYTES
+ *   5  rollNo      UTF-8, rollLen bytes
+ *   .  deviceHash  8 bytes, {@link #hashDeviceId(String)} of ANDROID_ID
+ *   .  clientTime  8 bytes, epoch millis on the student phone
+ *   .  nonce       8 bytes, random per check-in and the same in every resend: the check-in id
+ * </pre>
+ *
+ * Decoding goes through a reusable {@link Frame} that reads fields in place from the
+ * received array, so the only allocation per check-in is the roll number string.
+ *
+ * <p>The professor answers a check-in that set {@link #FLAG_FRAMED_REPLY} with a {@link Reply}:
+ *
+ * <pre>
+ *   0  magic       'P' 'R'
+ *   2  version     1
+ *   3  status      {@link Reply#MARKED}, {@link Reply#ALREADY_MARKED} or {@link Reply#REFUSED}
+ *   4  checkInId   8 bytes, the nonce of the check-in being answered
+ *  12  serverTime  8 bytes, epoch millis the professor recorded the student; 0 if refused
+ *  20  message     UTF-8, why it was refused; empty otherwise
+ * </pre>
+ *
+ * Older students leave the flag clear and get "SUCCESS" or the bare message instead.
+ */
+public final class CheckInCodec {
+
+    public static final byte MAGIC_0 = 'P';
+    public static final byte MAGIC_1 = 'A';
+    public static final int VERSION = 1;
+    public static final int MAX_ROLL_BYTES = 32;
+    /** The student understands {@link Reply} frames and matches them to its check-in id. */
+    public static final int FLAG_FRAMED_REPLY = 0x01;
+    public static final byte REPLY_MAGIC_1 = 'R';
+    // Every flag this version understands; a frame using any other bit is from a format we can't read
+    static final int KNOWN_FLAGS = FLAG_FRAMED_REPLY;
+
+    static final int HEADER_BYTES = 5;
+    static final int TRAILER_BYTES = 24;
+    static final int REPLY_HEADER_BYTES = 20;
+
+    private CheckInCodec() {}
+
+    public static boolean isValidRollNo(String rollNo) {
+        if (rollNo == null || rollNo.isEmpty()) return false;
+        int length = rollNo.getBytes(StandardCharsets.UTF_8).length;
+        return length <= MAX_ROLL_BYTES;
+    }
+
+    public static byte[] encode(String rollNo, long deviceHash, long clientTime, long nonce) {
+        return encode(rollNo, deviceHash, clientTime, nonce, 0);
+    }
+
+    public static byte[] encode(String rollNo, long deviceHash, long clientTime, long nonce, int flags) {
+        if (!isValidRollNo(rollNo)) {
+            throw new IllegalArgumentException("Roll number must be 1.." + MAX_ROLL_BYTES + " bytes");
+        }
+        if ((flags & ~KNOWN_FLAGS) != 0) {
+            throw new IllegalArgumentException("Unknown flags 0x" + Integer.toHexString(flags));
+        }
+        byte[] roll = rollNo.getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[HEADER_BYTES + roll.length + TRAILER_BYTES];
+        out[0] = MAGIC_0;
+        out[1] = MAGIC_1;
+        out[2] = VERSION;
+        out[3] = (byte) flags;
+        out[4] = (byte) roll.length;
+        System.arraycopy(roll, 0, out, HEADER_BYTES, roll.length);
+        int pos = HEADER_BYTES + roll.length;
+        putLong(out, pos, deviceHash);
+        putLong(out, pos + 8, clientTime);
+        putLong(out, pos + 16, nonce);
+        return out;
+    }
+
+    public static byte[] encodeReply(int status, long checkInId, long serverTime, String message) {
+        byte[] text = message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[REPLY_HEADER_BYTES + text.length];
+        out[0] = MAGIC_0;
+        out[1] = REPLY_MAGIC_1;
+        out[2] = VERSION;
+        out[3] = (byte) status;
+        putLong(out, 4, checkInId);
+        putLong(out, 12, serverTime);
+        System.arraycopy(text, 0, out, REPLY_HEADER_BYTES, text.length);
+        return out;
+    }
+
+    /** Returns null if {@code bytes} aren't a reply frame, e.g. a plain "SUCCESS" from an older professor. */
+    public static Reply decodeReply(byte[] bytes) {
+        if (bytes == null || bytes.length < REPLY_HEADER_BYTES) return null;
+        if (bytes[0] != MAGIC_0 || bytes[1] != REPLY_MAGIC_1 || bytes[2] != VERSION) return null;
+        int status = bytes[3] & 0xff;
+        if (status > Reply.REFUSED) return null;
+        String message = new String(bytes, REPLY_HEADER_BYTES, bytes.length - REPLY_HEADER_BYTES, StandardCharsets.UTF_8);
+        return new Reply(status, getLong(bytes, 4), getLong(bytes, 12), message);
+    }
+
+    /** The professor's answer to one check-in. */
+    public static final class Reply {
+        public static final int MARKED = 0;
+        /** Marked earlier, e.g. the first ACK was lost; {@link #serverTime} is from then. */
+        public static final int ALREADY_MARKED = 1;
+        public static final int REFUSED = 2;
+
+        public final int status;
+        public final long checkInId;
+        public final long serverTime;
+        public final String message;
+
+        Reply(int status, long checkInId, long serverTime, String message) {
+            this.status = status;
+            this.checkInId = checkInId;
+            this.serverTime = serverTime;
+            this.message = message;
+        }
+
+        public boolean isMarked() {
+            return status != REFUSED;
+        }
+    }
+
+    /** 64-bit FNV-1a over the UTF-8 bytes of the device id. */
+    public static long hashDeviceId(String deviceId) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : deviceId.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static void putLong(byte[] out, int pos, long value) {
+        for (int i = 7; i >= 0; i--) {
+            out[pos + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    static long getLong(byte[] in, int pos) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (in[pos + i] & 0xff);
+        }
+        return value;
+    }
+
+    /** Flyweight view over an encoded check-in. Reuse one instance per receiving thread. */
+    public static final class Frame {
+
+        private byte[] data;
+        private int rollLength;
+
+        /** Points this frame at {@code bytes}. Returns false, leaving the frame empty, if they aren't a valid check-in. */
+        public boolean wrap(byte[] bytes) {
+            return wrap(bytes, bytes == null ? 0 : bytes.length);
+        }
+
+        /** Same as {@link #wrap(byte[])} for a check-in that fills only the first {@code length} bytes. */
+        public boolean wrap(byte[] bytes, int length) {
+            data = null;
+            if (bytes == null || length > bytes.length || length < HEADER_BYTES + 1 + TRAILER_BYTES) return false;
+            if (bytes[0] != MAGIC_0 || bytes[1] != MAGIC_1 || bytes[2] != VERSION) return false;
+            if ((bytes[3] & ~KNOWN_FLAGS) != 0) return false;
+            int rollBytes = bytes[4] & 0xff;
+            if (rollBytes == 0 || rollBytes > MAX_ROLL_BYTES) return false;
+            if (length != HEADER_BYTES + rollBytes + TRAILER_BYTES) return false;
+            data = bytes;
+            rollLength = rollBytes;
+            return true;
+        }
+
+        public int flags() {
+            return data[3] & 0xff;
+        }
+
+        public String rollNo() {
+            return new String(data, HEADER_BYTES, rollLength, StandardCharsets.UTF_8);
+        }
+
+        public long deviceHash() {
+            return getLong(data, HEADER_BYTES + rollLength);
+        }
+
+        public long clientTime() {
+            return getLong(data, HEADER_BYTES + rollLength + 8);
+        }
+
+        public long nonce() {
+            return getLong(data, HEADER_BYTES + rollLength + 16);
+        }
+    }
+}
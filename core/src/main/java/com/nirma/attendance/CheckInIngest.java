@@ -0,0 +1,34 @@
+package com.nirma.attendance;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns a received payload into a {@link CheckIn}. Fields are read in place through a
+ * reused {@link CheckInCodec.Frame} and the timestamp stays as epoch millis, so the
+ * only per-arrival garbage is the roll number string and the CheckIn itself.
+ * The ACK bytes are shared by every reply. Single-threaded, like the Nearby callbacks.
+ */
+public final class CheckInIngest {
+
+    static final byte[] ACK_BYTES = "SUCCESS".getBytes(StandardCharsets.UTF_8);
+
+    private final CheckInCodec.Frame frame = new CheckInCodec.Frame();
+
+    /** Returns null if the payload isn't a check-in this version understands. */
+    public CheckIn decode(byte[] data, long receivedAt) {
+        return decode(data, data == null ? 0 : data.length, receivedAt);
+    }
+
+    /** Decodes a check-in occupying the first {@code length} bytes, e.g. ahead of a {@link HandshakeSeal} tag. */
+    public CheckIn decode(byte[] data, int length, long receivedAt) {
+        if (!frame.wrap(data, length)) {
+            return null;
+        }
+        return new CheckIn(frame.rollNo(), frame.deviceHash(), frame.nonce(), receivedAt);
+    }
+
+    /** Whether the check-in last decoded asked for a {@link CheckInCodec.Reply} rather than plain text. */
+    public boolean wantsFramedReply() {
+        return (frame.flags() & CheckInCodec.FLAG_FRAMED_REPLY) != 0;
+    }
+}
@@ -0,0 +1,213 @@
+package com.nirma.attendance;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * The student's side of one check-in, from the tap to the ACK, as explicit states with
+ * deadlines. It decides when the radio is on: discovery gives up after a deadline instead
+ * of scanning forever, a lost professor or dropped link is retried a bounded number of
+ * times with {@link Backoff} (radio off while waiting), and everything stops the moment
+ * the check-in is marked or refused. Taps while a check-in is running are ignored.
+ *
+ * The activity feeds it Nearby and server events and performs its {@link Actions}.
+ * Single-threaded; the app drives it from the main thread.
+ */
+public final class CheckInStateMachine {
+
+    public enum State {
+        IDLE,
+        /** Scanning for the professor's advert. */
+        DISCOVERING,
+        /** Found the professor; waiting for the link (or, in fast mode, the answer). */
+        CONNECTING,
+        /** Linked; verifying, sending and waiting for the ACK. */
+        CHECKING_IN,
+        /** Radio off until the next attempt. */
+        BACKING_OFF,
+        MARKED,
+        /** The professor or the server said no; retrying won't change that. */
+        REFUSED,
+        /** Gave up: nothing found, or out of attempts. Tap to start over. */
+        FAILED;
+
+        public boolean isActive() {
+            return this == DISCOVERING || this == CONNECTING || this == CHECKING_IN || this == BACKING_OFF;
+        }
+    }
+
+    public interface Actions {
+        /** Start scanning. Every attempt starts here, with a fresh link. */
+        void startDiscovery();
+
+        /** Stop scanning and drop any link or pending request. */
+        void stopRadio();
+
+        void onStateChanged(State state, String message);
+    }
+
+    public interface Scheduler {
+        void schedule(long delayMillis, Runnable task);
+    }
+
+    private final Actions actions;
+    private final Scheduler scheduler;
+    private final LongSupplier clock; // millis, monotonic
+    private final SessionTelemetry telemetry;
+    private final Backoff backoff;
+    private final int maxAttempts;
+    private final long discoveryTimeoutMillis;
+    private final long connectTimeoutMillis;
+    private final long ackTimeoutMillis;
+
+    private State state = State.IDLE;
+    private int attempt; // 1-based once started
+    private int generation; // bumped on every transition, so stale deadlines are ignored
+    private long radioOnSince = -1;
+    private long radioOnMillis;
+
+    /**
+     * @param maxAttempts            link attempts per check-in, the first one included
+     * @param discoveryTimeoutMillis scanning without finding the professor before giving up
+     * @param connectTimeoutMillis   from finding the professor to the link being up
+     * @param ackTimeoutMillis       from the link being up to the ACK, server check included
+     */
+    public CheckInStateMachine(Actions actions, Scheduler scheduler, LongSupplier clock, SessionTelemetry telemetry,
+                               Backoff backoff, int maxAttempts, long discoveryTimeoutMillis,
+                               long connectTimeoutMillis, long ackTimeoutMillis) {
+        this.actions = actions;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.telemetry = telemetry;
+        this.backoff = backoff;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.discoveryTimeoutMillis = discoveryTimeoutMillis;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /** Radio-on time of the current (or last) check-in so far. */
+    public long radioOnMillis() {
+        return radioOnMillis + (radioOnSince < 0 ? 0 : clock.getAsLong() - radioOnSince);
+    }
+
+    // --- EVENTS ---
+    /** The student tapped check in. Returns false, and does nothing, while one is running. */
+    public boolean start() {
+        if (state.isActive()) {
+            telemetry.increment("student.ignored_taps");
+            return false;
+        }
+        attempt = 0;
+        radioOnMillis = 0;
+        nextAttempt();
+        return true;
+    }
+
+    public void onEndpointFound() {
+        if (state != State.DISCOVERING) return;
+        enter(State.CONNECTING, "Found the class. Connecting...", connectTimeoutMillis);
+    }
+
+    public void onConnected() {
+        if (state != State.CONNECTING) return;
+        enter(State.CHECKING_IN, "Connected. Checking in...", ackTimeoutMillis);
+    }
+
+    public void onMarked() {
+        if (!state.isActive()) return;
+        radioOff();
+        long radioOn = radioOnMillis();
+        telemetry.recordMicros("student.radio_on", radioOn * 1000);
+        telemetry.increment("student.marked");
+        enter(State.MARKED, String.format(Locale.US, "✅ ATTENDANCE MARKED! (radio on %.1fs, %d %s)",
+                radioOn / 1000.0, attempt, attempt == 1 ? "attempt" : "attempts"), 0);
+    }
+
+    public void onRefused(String message) {
+        if (!state.isActive()) return;
+        radioOff();
+        telemetry.increment("student.refused");
+        enter(State.REFUSED, message, 0);
+    }
+
+    /** The professor vanished, the link failed or dropped before the ACK. Retries if allowed. */
+    public void onLinkLost(String reason) {
+        if (state != State.DISCOVERING && state != State.CONNECTING && state != State.CHECKING_IN) return;
+        retryOrFail(reason);
+    }
+
+    /** Something outside the radio failed for good, e.g. the server can't be reached. */
+    public void fail(String message) {
+        if (!state.isActive()) return;
+        radioOff();
+        enter(State.FAILED, message, 0);
+    }
+
+    /** The screen is going away: radio off, no more callbacks. */
+    public void cancel() {
+        if (state.isActive()) radioOff();
+        generation++;
+        state = State.IDLE;
+    }
+
+    // --- TRANSITIONS ---
+    private void nextAttempt() {
+        attempt++;
+        if (attempt > 1) telemetry.increment("student.reconnects");
+        if (radioOnSince < 0) radioOnSince = clock.getAsLong();
+        enter(State.DISCOVERING, attempt == 1 ? "Scanning for class..."
+                : "Reconnecting (attempt " + attempt + " of " + maxAttempts + ")...", discoveryTimeoutMillis);
+        actions.startDiscovery();
+    }
+
+    private void retryOrFail(String reason) {
+        radioOff();
+        if (attempt >= maxAttempts) {
+            telemetry.increment("student.gave_up");
+            enter(State.FAILED, reason + ". Tap to try again.", 0);
+            return;
+        }
+        long delay = backoff.delayMillis(attempt - 1);
+        enter(State.BACKING_OFF, reason + ". Retrying...", 0);
+        int expected = generation;
+        scheduler.schedule(delay, () -> {
+            if (generation == expected) nextAttempt();
+        });
+    }
+
+    private void onDeadline(State expired) {
+        telemetry.increment("student.timeout." + expired.name().toLowerCase(Locale.ROOT));
+        if (expired == State.DISCOVERING) {
+            // Nothing to reconnect to; scanning on would only drain the battery
+            radioOff();
+            enter(State.FAILED, "No class found nearby. Check the course code and tap to try again.", 0);
+        } else {
+            retryOrFail(expired == State.CONNECTING ? "Connection timed out" : "No reply from the professor");
+        }
+    }
+
+    /** Moves to {@code next}; a positive {@code deadlineMillis} times out of it. */
+    private void enter(State next, String message, long deadlineMillis) {
+        state = next;
+        int expected = ++generation;
+        if (deadlineMillis > 0) {
+            scheduler.schedule(deadlineMillis, () -> {
+                if (generation == expected) onDeadline(next);
+            });
+        }
+        actions.onStateChanged(next, message);
+    }
+
+    private void radioOff() {
+        actions.stopRadio();
+        if (radioOnSince >= 0) {
+            radioOnMillis += clock.getAsLong() - radioOnSince;
+            radioOnSince = -1;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.nirma.attendance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Which phones marked which roll numbers in earlier sessions, kept in two Bloom filters
+ * (16 KB each) instead of a growing table. A phone that was seen before, but never with
+ * this roll number, is flagged as a possible proxy. False positives are possible (about
+ * 0.3% at 10,000 pairs), so this only flags; it never rejects on its own. Thread-safe, so
+ * it can be saved off the thread that fills it.
+ */
+public class DeviceHistory {
+
+    private static final int BITS = 1 << 17;
+    private static final int HASHES = 5;
+    private static final int FILE_VERSION = 1;
+
+    private final long[] devices = new long[BITS / 64];
+    private final long[] pairs = new long[BITS / 64];
+    private boolean dirty;
+
+    public synchronized boolean isSuspect(long deviceHash, String rollNo) {
+        return mightContain(devices, mix(deviceHash)) && !mightContain(pairs, pairHash(deviceHash, rollNo));
+    }
+
+    public synchronized void remember(long deviceHash, String rollNo) {
+        dirty |= add(devices, mix(deviceHash));
+        dirty |= add(pairs, pairHash(deviceHash, rollNo));
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /** Loads a saved history; a missing or unreadable file gives an empty one. */
+    public static DeviceHistory load(File file) {
+        DeviceHistory history = new DeviceHistory();
+        if (!file.exists()) return history;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION || in.readInt() != BITS) return history;
+            for (int i = 0; i < history.devices.length; i++) history.devices[i] = in.readLong();
+            for (int i = 0; i < history.pairs.length; i++) history.pairs[i] = in.readLong();
+        } catch (IOException e) {
+            return new DeviceHistory();
+        }
+        return history;
+    }
+
+    /** Writes to a temp file and renames it over {@code file}, so a crash can't leave half a filter. */
+    public synchronized void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(BITS);
+            for (long word : devices) out.writeLong(word);
+            for (long word : pairs) out.writeLong(word);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        dirty = false;
+    }
+
+    private static long pairHash(long deviceHash, String rollNo) {
+        long hash = deviceHash;
+        for (byte b : rollNo.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // Finalizer from SplitMix64, so neighbouring inputs land far apart
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // Double hashing: probe i is h1 + i * h2
+    private static boolean mightContain(long[] bits, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & (BITS - 1);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private static boolean add(long[] bits, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        boolean changed = false;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & (BITS - 1);
+            long mask = 1L << bit;
+            if ((bits[bit >>> 6] & mask) == 0) {
+                bits[bit >>> 6] |= mask;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
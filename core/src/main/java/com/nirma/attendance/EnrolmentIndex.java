@@ -0,0 +1,220 @@
+package com.nirma.attendance;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The class list for a session. Every enrolled roll number gets a dense slot, so presence
+ * is one bit in a {@link BitSet}: marking, counting and the absentee list stay cheap even
+ * for 1,000+ students. Roll numbers are compared trimmed and case-insensitively, since
+ * students type their own. Not thread safe: the professor side only touches it from the
+ * main thread once it's built.
+ */
+public final class EnrolmentIndex {
+
+    private final String[] rolls;
+    private final String[] names; // "" when the list has no name column
+    private final HashMap<String, Integer> slotByRoll;
+    private final BitSet present;
+    private int presentCount;
+
+    private EnrolmentIndex(List<String> rolls, List<String> names) {
+        this.rolls = rolls.toArray(new String[0]);
+        this.names = names.toArray(new String[0]);
+        this.slotByRoll = new HashMap<>(this.rolls.length * 2);
+        for (int slot = 0; slot < this.rolls.length; slot++) {
+            slotByRoll.put(key(this.rolls[slot]), slot);
+        }
+        this.present = new BitSet(this.rolls.length);
+    }
+
+    /** An index over these roll numbers, without names. Duplicates and blanks are dropped. */
+    public static EnrolmentIndex of(List<String> rollNumbers) {
+        Builder builder = new Builder();
+        for (String roll : rollNumbers) builder.add(roll, "");
+        return builder.build();
+    }
+
+    /**
+     * Reads a class list exported from a spreadsheet. If the first row names a column with
+     * "roll" in it, that column holds the roll numbers and a "name" column, if any, the
+     * names; otherwise there's no header and the roll numbers are in the first column.
+     * Quoted fields are understood. Does not close {@code in}.
+     */
+    public static EnrolmentIndex parseCsv(Reader in) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        Builder builder = new Builder();
+        ArrayList<String> fields = new ArrayList<>();
+        int rollColumn = 0;
+        int nameColumn = -1;
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (first) line = stripBom(line);
+            splitCsvLine(line, fields);
+            if (first) {
+                first = false;
+                int headerRoll = indexOfContaining(fields, "roll");
+                if (headerRoll >= 0) {
+                    rollColumn = headerRoll;
+                    nameColumn = indexOfContaining(fields, "name");
+                    continue;
+                }
+            }
+            if (rollColumn >= fields.size()) continue;
+            String name = nameColumn >= 0 && nameColumn < fields.size() ? fields.get(nameColumn).trim() : "";
+            builder.add(fields.get(rollColumn), name);
+        }
+        return builder.build();
+    }
+
+    // --- LOOKUPS ---
+    public int size() {
+        return rolls.length;
+    }
+
+    /** The roll number's slot, or -1 if it isn't on the list. */
+    public int slotOf(String rollNo) {
+        if (rollNo == null) return -1;
+        Integer slot = slotByRoll.get(key(rollNo));
+        return slot == null ? -1 : slot;
+    }
+
+    public boolean isEnrolled(String rollNo) {
+        return slotOf(rollNo) >= 0;
+    }
+
+    /** The roll number as it appears on the class list. */
+    public String rollAt(int slot) {
+        return rolls[slot];
+    }
+
+    public String nameAt(int slot) {
+        return names[slot];
+    }
+
+    // --- PRESENCE ---
+    /** Marks the student present. Returns false if they aren't enrolled or already were. */
+    public boolean markPresent(String rollNo) {
+        int slot = slotOf(rollNo);
+        if (slot < 0 || present.get(slot)) return false;
+        present.set(slot);
+        presentCount++;
+        return true;
+    }
+
+    /** Undoes {@link #markPresent}, e.g. when the server turned the check-in down. */
+    public void markAbsent(String rollNo) {
+        int slot = slotOf(rollNo);
+        if (slot >= 0 && present.get(slot)) {
+            present.clear(slot);
+            presentCount--;
+        }
+    }
+
+    public boolean isPresent(String rollNo) {
+        int slot = slotOf(rollNo);
+        return slot >= 0 && present.get(slot);
+    }
+
+    public int presentCount() {
+        return presentCount;
+    }
+
+    public int absentCount() {
+        return rolls.length - presentCount;
+    }
+
+    /** Slots of everyone not yet marked, in class-list order. */
+    public int[] absentSlots() {
+        int[] slots = new int[absentCount()];
+        int i = 0;
+        for (int slot = present.nextClearBit(0); slot < rolls.length; slot = present.nextClearBit(slot + 1)) {
+            slots[i++] = slot;
+        }
+        return slots;
+    }
+
+    /** Roll numbers of everyone not yet marked, in class-list order. */
+    public List<String> absentees() {
+        ArrayList<String> result = new ArrayList<>(absentCount());
+        for (int slot : absentSlots()) result.add(rolls[slot]);
+        return result;
+    }
+
+    /** Forgets who is present, keeping the class list. */
+    public void clearPresence() {
+        present.clear();
+        presentCount = 0;
+    }
+
+    // --- PARSING ---
+    private static String key(String rollNo) {
+        return rollNo.trim().toUpperCase(Locale.ROOT);
+    }
+
+    static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    private static int indexOfContaining(List<String> fields, String word) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).toLowerCase(Locale.ROOT).contains(word)) return i;
+        }
+        return -1;
+    }
+
+    /** Splits one CSV line into {@code out}. Quoted fields may hold commas and "" escapes. */
+    static void splitCsvLine(String line, List<String> out) {
+        out.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        out.add(field.toString());
+    }
+
+    private static final class Builder {
+        private final ArrayList<String> rolls = new ArrayList<>();
+        private final ArrayList<String> names = new ArrayList<>();
+        private final HashSet<String> seen = new HashSet<>();
+
+        void add(String roll, String name) {
+            String trimmed = roll.trim();
+            if (trimmed.isEmpty() || !seen.add(key(trimmed))) return;
+            rolls.add(trimmed);
+            names.add(name);
+        }
+
+        EnrolmentIndex build() {
+            return new EnrolmentIndex(rolls, names);
+        }
+    }
+}
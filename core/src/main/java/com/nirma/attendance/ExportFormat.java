@@ -0,0 +1,278 @@
+package com.nirma.attendance;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Output formats for {@link RosterExporter}. Every writer streams one record at a time
+ * through a buffer, so the document never exists in memory as a whole.
+ */
+public enum ExportFormat {
+
+    CSV("CSV", "text/csv", "csv") {
+        @Override
+        RecordWriter open(OutputStream out) throws IOException {
+            return new CsvWriter(out);
+        }
+    },
+    JSON_LINES("JSON Lines", "application/x-ndjson", "jsonl") {
+        @Override
+        RecordWriter open(OutputStream out) throws IOException {
+            return new JsonLinesWriter(out);
+        }
+    },
+    XLSX("Excel (XLSX)", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx") {
+        @Override
+        RecordWriter open(OutputStream out) throws IOException {
+            return new XlsxWriter(out);
+        }
+    };
+
+    public final String label;
+    public final String mimeType;
+    public final String extension;
+
+    ExportFormat(String label, String mimeType, String extension) {
+        this.label = label;
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    /** Writes the header straight away. Closing the writer closes {@code out}. */
+    abstract RecordWriter open(OutputStream out) throws IOException;
+
+    interface RecordWriter extends Closeable {
+        void write(CheckIn checkIn) throws IOException;
+    }
+
+    private static Writer utf8(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+    }
+
+    // --- CSV ---
+    private static final class CsvWriter implements RecordWriter {
+        private final Writer writer;
+        private final SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm:ss a", Locale.getDefault());
+        private final Date date = new Date();
+
+        CsvWriter(OutputStream out) throws IOException {
+            writer = utf8(out);
+            writer.write("Roll Number,Device,Timestamp\n");
+        }
+
+        @Override
+        public void write(CheckIn checkIn) throws IOException {
+            date.setTime(checkIn.timestampMillis);
+            writeField(checkIn.rollNo);
+            writer.write(',');
+            writer.write(checkIn.deviceTag());
+            writer.write(',');
+            writer.write(timeFormat.format(date));
+            writer.write('\n');
+        }
+
+        private void writeField(String field) throws IOException {
+            String value = neutralizeFormula(field);
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    // --- JSON LINES ---
+    private static final class JsonLinesWriter implements RecordWriter {
+        private final Writer writer;
+        private final SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        private final Date date = new Date();
+
+        JsonLinesWriter(OutputStream out) {
+            writer = utf8(out);
+            isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        }
+
+        @Override
+        public void write(CheckIn checkIn) throws IOException {
+            date.setTime(checkIn.timestampMillis);
+            writer.write("{\"rollNo\":\"");
+            writeEscaped(writer, checkIn.rollNo, false);
+            writer.write("\",\"device\":\"");
+            writer.write(checkIn.deviceTag());
+            writer.write("\",\"timestamp\":");
+            writer.write(Long.toString(checkIn.timestampMillis));
+            writer.write(",\"time\":\"");
+            writer.write(isoFormat.format(date));
+            writer.write("\"}\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    // --- XLSX: the smallest valid workbook, with the one sheet streamed row by row ---
+    private static final class XlsxWriter implements RecordWriter {
+        private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+        private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+        private static final String REL_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+        private static final String DOC_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+        private final ZipOutputStream zip;
+        private final Writer writer;
+        private final SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm:ss a", Locale.getDefault());
+        private final Date date = new Date();
+
+        XlsxWriter(OutputStream target) throws IOException {
+            zip = new ZipOutputStream(new BufferedOutputStream(target, 16 * 1024));
+            // The zip stream is closed by us, not by each part's writer
+            writer = utf8(new FilterOutputStream(zip) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            });
+
+            part("[Content_Types].xml", XML_HEADER
+                    + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                    + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                    + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                    + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                    + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+                    + "</Types>");
+            part("_rels/.rels", XML_HEADER
+                    + "<Relationships xmlns=\"" + REL_NS + "\">"
+                    + "<Relationship Id=\"rId1\" Type=\"" + DOC_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                    + "</Relationships>");
+            part("xl/workbook.xml", XML_HEADER
+                    + "<workbook xmlns=\"" + MAIN_NS + "\" xmlns:r=\"" + DOC_REL + "\">"
+                    + "<sheets><sheet name=\"Attendance\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+                    + "</workbook>");
+            part("xl/_rels/workbook.xml.rels", XML_HEADER
+                    + "<Relationships xmlns=\"" + REL_NS + "\">"
+                    + "<Relationship Id=\"rId1\" Type=\"" + DOC_REL + "/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+                    + "</Relationships>");
+
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+            writer.write(XML_HEADER);
+            writer.write("<worksheet xmlns=\"" + MAIN_NS + "\"><sheetData>");
+            writer.write("<row>");
+            cell("Roll Number");
+            cell("Device");
+            cell("Timestamp");
+            writer.write("</row>");
+        }
+
+        private void part(String name, String content) throws IOException {
+            zip.putNextEntry(new ZipEntry(name));
+            writer.write(content);
+            writer.flush();
+            zip.closeEntry();
+        }
+
+        private void cell(String value) throws IOException {
+            writer.write("<c t=\"inlineStr\"><is><t>");
+            writeEscaped(writer, value, true);
+            writer.write("</t></is></c>");
+        }
+
+        @Override
+        public void write(CheckIn checkIn) throws IOException {
+            date.setTime(checkIn.timestampMillis);
+            writer.write("<row>");
+            cell(checkIn.rollNo);
+            cell(checkIn.deviceTag());
+            cell(timeFormat.format(date));
+            writer.write("</row>");
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writer.write("</sheetData></worksheet>");
+                writer.flush();
+                zip.closeEntry();
+            } finally {
+                zip.close();
+            }
+        }
+    }
+
+    /**
+     * Roll numbers come from student phones, and Excel or Sheets would run one like
+     * "=HYPERLINK(...)" as a formula. A leading quote makes such a cell plain text.
+     */
+    static String neutralizeFormula(String value) {
+        if (value.isEmpty()) return value;
+        switch (value.charAt(0)) {
+            case '=': case '+': case '-': case '@': case '\t': case '\r':
+                return "'" + value;
+            default:
+                return value;
+        }
+    }
+
+    /** Undoes {@link #neutralizeFormula}, for reading an exported CSV back. */
+    static String restoreFormula(String value) {
+        if (value.length() > 1 && value.charAt(0) == '\'' && !neutralizeFormula(value.substring(1)).equals(value.substring(1))) {
+            return value.substring(1);
+        }
+        return value;
+    }
+
+    private static void writeEscaped(Writer writer, String value, boolean xml) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (xml) {
+                switch (c) {
+                    case '<': writer.write("&lt;"); break;
+                    case '>': writer.write("&gt;"); break;
+                    case '&': writer.write("&amp;"); break;
+                    case '"': writer.write("&quot;"); break;
+                    default:
+                        if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') writer.write(c);
+                }
+            } else {
+                switch (c) {
+                    case '"': writer.write("\\\""); break;
+                    case '\\': writer.write("\\\\"); break;
+                    case '\n': writer.write("\\n"); break;
+                    case '\r': writer.write("\\r"); break;
+                    case '\t': writer.write("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            writer.write(String.format(Locale.US, "\\u%04x", (int) c));
+                        } else {
+                            writer.write(c);
+                        }
+                }
+            }
+        }
+    }
+}
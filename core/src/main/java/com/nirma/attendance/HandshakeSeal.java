@@ -0,0 +1,58 @@
+package com.nirma.attendance;
+
+import java.security.GeneralSecurityException;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Fast-mode check-ins ride in the connection request's endpoint info as a
+ * {@link CheckInCodec} frame followed by a {@link #TAG_BYTES}-byte HMAC-SHA256 tag keyed by
+ * the advertised {@link SessionDescriptor}. The descriptor is public, so this doesn't
+ * authenticate the student; it binds the record to one advert, so a request captured in
+ * another lecture (or before the professor restarted advertising) is refused.
+ *
+ * Not thread-safe; the Mac is reused across calls.
+ */
+public final class HandshakeSeal {
+
+    public static final int TAG_BYTES = 8;
+
+    private final Mac mac;
+    private final byte[] tag = new byte[32];
+
+    public HandshakeSeal(SessionDescriptor session) {
+        try {
+            mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(session.encode(), "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is mandatory on every Android and JVM we ship to
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Returns {@code frame} with the tag appended. */
+    public byte[] seal(byte[] frame) {
+        byte[] out = new byte[frame.length + TAG_BYTES];
+        System.arraycopy(frame, 0, out, 0, frame.length);
+        mac.update(frame, 0, frame.length);
+        System.arraycopy(mac.doFinal(), 0, out, frame.length, TAG_BYTES);
+        return out;
+    }
+
+    /** Returns the length of the frame in front of a valid tag, or -1 if {@code sealed} wasn't made for this session. */
+    public int open(byte[] sealed) {
+        if (sealed == null || sealed.length <= TAG_BYTES) return -1;
+        int frameLength = sealed.length - TAG_BYTES;
+        mac.update(sealed, 0, frameLength);
+        try {
+            mac.doFinal(tag, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        int diff = 0; // constant time, like MessageDigest.isEqual
+        for (int i = 0; i < TAG_BYTES; i++) {
+            diff |= tag[i] ^ sealed[frameLength + i];
+        }
+        return diff == 0 ? frameLength : -1;
+    }
+}
@@ -0,0 +1,220 @@
+package com.nirma.attendance;
+
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A fake radio for the JVM. Runs on a virtual clock: every message is an event that
+ * lands after a random one-way latency, so a 300-student session takes milliseconds of
+ * real time and replays exactly for a given seed. It can also lose messages (the other
+ * side just never hears them) and break links (both sides get a disconnect), which is
+ * what a crowded classroom does to Nearby.
+ *
+ * Mirrors the Nearby behaviour the hub depends on: our own disconnects don't call back
+ * onDisconnected, and payload delivery is reported asynchronously. Single-threaded.
+ */
+public final class InMemoryTransport implements Transport {
+
+    /** The student's end of one connection attempt. */
+    public interface Student {
+        /** The hub accepted (true) or rejected (false) the connection request. */
+        void onConnectionResult(boolean connected);
+
+        void onPayload(byte[] bytes);
+
+        /** The hub hung up or the link broke. */
+        void onDisconnected();
+    }
+
+    private static final class Link {
+        final String id;
+        final Student student;
+        boolean connected;
+        boolean closed;
+
+        Link(String id, Student student) {
+            this.id = id;
+            this.student = student;
+        }
+    }
+
+    private static final class Event implements Comparable<Event> {
+        final long at;
+        final long seq; // FIFO among events due at the same time
+        final Runnable action;
+
+        Event(long at, long seq, Runnable action) {
+            this.at = at;
+            this.seq = seq;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (at != other.at) return Long.compare(at, other.at);
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    private final Random random;
+    private final long minLatencyMillis;
+    private final long maxLatencyMillis;
+    private final double lossRate;
+    private final double disconnectRate;
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final HashMap<String, Link> links = new HashMap<>();
+    private Transport.Listener hub;
+    private long now;
+    private long seq;
+    private int nextEndpoint;
+    private long nextPayloadId;
+
+    /**
+     * @param lossRate       chance that a connection request or payload silently vanishes
+     * @param disconnectRate chance that sending a payload breaks the link instead
+     */
+    public InMemoryTransport(Random random, long minLatencyMillis, long maxLatencyMillis,
+                             double lossRate, double disconnectRate) {
+        this.random = random;
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.lossRate = lossRate;
+        this.disconnectRate = disconnectRate;
+    }
+
+    public void setListener(Transport.Listener hub) {
+        this.hub = hub;
+    }
+
+    /** Virtual time in millis; use it as the hub's clock. */
+    public long now() {
+        return now;
+    }
+
+    public void schedule(long delayMillis, Runnable action) {
+        events.add(new Event(now + Math.max(0, delayMillis), seq++, action));
+    }
+
+    /** Runs events in time order until {@code done} or the clock passes {@code limitMillis}. */
+    public void run(BooleanSupplier done, long limitMillis) {
+        while (!done.getAsBoolean() && !events.isEmpty() && events.peek().at <= limitMillis) {
+            Event event = events.poll();
+            now = event.at;
+            event.action.run();
+        }
+    }
+
+    // --- STUDENT SIDE ---
+    /** Starts a connection attempt; returns the endpoint id the hub will see. */
+    public String requestConnection(byte[] endpointInfo, Student student) {
+        Link link = new Link("S" + nextEndpoint++, student);
+        links.put(link.id, link);
+        if (!lost()) {
+            deliver(() -> {
+                if (!link.closed) hub.onConnectionRequested(link.id, endpointInfo);
+            });
+        }
+        return link.id;
+    }
+
+    public void sendFromStudent(String endpointId, byte[] bytes) {
+        Link link = links.get(endpointId);
+        if (link == null || !link.connected) return;
+        if (breaks()) {
+            breakLink(link);
+            return;
+        }
+        if (lost()) return;
+        deliver(() -> {
+            if (link.connected) hub.onPayload(link.id, bytes);
+        });
+    }
+
+    /** The student gives up on this attempt (timeout or done). */
+    public void disconnectFromStudent(String endpointId) {
+        Link link = links.remove(endpointId);
+        if (link == null || link.closed) return;
+        link.closed = true;
+        link.connected = false;
+        deliver(() -> hub.onDisconnected(link.id));
+    }
+
+    // --- HUB SIDE ---
+    @Override
+    public void accept(String endpointId) {
+        Link link = links.get(endpointId);
+        if (link == null) return;
+        deliver(() -> {
+            if (link.closed) return;
+            link.connected = true;
+            hub.onConnectionResult(link.id, true);
+            link.student.onConnectionResult(true);
+        });
+    }
+
+    @Override
+    public void reject(String endpointId) {
+        Link link = links.remove(endpointId);
+        if (link == null) return;
+        link.closed = true;
+        deliver(() -> {
+            hub.onConnectionResult(link.id, false);
+            link.student.onConnectionResult(false);
+        });
+    }
+
+    @Override
+    public void disconnect(String endpointId) {
+        Link link = links.remove(endpointId);
+        if (link == null || link.closed) return;
+        link.closed = true;
+        link.connected = false;
+        deliver(link.student::onDisconnected);
+    }
+
+    @Override
+    public long send(String endpointId, byte[] bytes) {
+        long payloadId = ++nextPayloadId;
+        Link link = links.get(endpointId);
+        if (link == null || !link.connected) return payloadId;
+        if (breaks()) {
+            breakLink(link);
+            return payloadId;
+        }
+        if (lost()) return payloadId;
+        deliver(() -> {
+            if (!link.connected) return;
+            link.student.onPayload(bytes);
+            deliver(() -> {
+                if (!link.closed) hub.onPayloadDelivered(link.id, payloadId);
+            });
+        });
+        return payloadId;
+    }
+
+    private void breakLink(Link link) {
+        links.remove(link.id);
+        link.closed = true;
+        link.connected = false;
+        deliver(() -> {
+            hub.onDisconnected(link.id);
+            link.student.onDisconnected();
+        });
+    }
+
+    private void deliver(Runnable action) {
+        long spread = maxLatencyMillis - minLatencyMillis;
+        schedule(minLatencyMillis + (spread <= 0 ? 0 : (long) (random.nextDouble() * (spread + 1))), action);
+    }
+
+    private boolean lost() {
+        return lossRate > 0 && random.nextDouble() < lossRate;
+    }
+
+    private boolean breaks() {
+        return disconnectRate > 0 && random.nextDouble() < disconnectRate;
+    }
+}
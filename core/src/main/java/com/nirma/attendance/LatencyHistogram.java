@@ -0,0 +1,77 @@
+package com.nirma.attendance;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations in microseconds, in the spirit of HdrHistogram:
+ * exact below 16 us, then 8 sub-buckets per power of two (within 12.5%), up to ~25 days.
+ * {@link #record(long)} is a couple of atomic adds and never locks or allocates, so it is
+ * safe to call from Nearby callbacks, HTTP workers and the UI thread at the same time.
+ * Reads are not a consistent snapshot while writers are running, which is fine for telemetry.
+ */
+public final class LatencyHistogram {
+
+    private static final int LINEAR = 16;       // values 0..15 get their own bucket
+    private static final int SUB_BITS = 3;      // 8 sub-buckets per power of two
+    private static final int MAX_EXPONENT = 40; // 2^41 us, about 25 days
+    static final int BUCKETS = LINEAR + (MAX_EXPONENT - 3) * (1 << SUB_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros) {
+        if (micros < 0) micros = 0;
+        counts.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long seen;
+        while (micros > (seen = max.get()) && !max.compareAndSet(seen, micros)) {
+            // lost a race with a bigger or equal value; re-check
+        }
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long maxMicros() {
+        return max.get();
+    }
+
+    public double meanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /** Upper bound of the bucket holding the {@code percentile}th value (0..100), or 0 if empty. */
+    public long percentileMicros(double percentile) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= 4
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return LINEAR + (exponent - 4) * (1 << SUB_BITS) + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) return bucket;
+        int exponent = (bucket - LINEAR) / (1 << SUB_BITS) + 4;
+        int sub = (bucket - LINEAR) % (1 << SUB_BITS);
+        long width = 1L << (exponent - SUB_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
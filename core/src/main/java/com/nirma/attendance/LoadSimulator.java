@@ -0,0 +1,338 @@
+package com.nirma.attendance;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Plays a whole class arriving at once against a real {@link AttendanceHub} over an
+ * {@link InMemoryTransport}. Each simulated student behaves like StudentActivity: request a
+ * connection (or, in fast mode, send the sealed check-in in the request), send the check-in,
+ * resend it a bounded number of times until the ACK for its check-in id comes back, and on a
+ * timeout or dropped link retry with {@link Backoff}, still under the same id.
+ * Runs on virtual time, so results are deterministic for a seed and cost no real waiting.
+ *
+ * <pre>
+ *   LoadSimulator.Result r = new LoadSimulator.Builder().setStudents(300).setLossRate(0.05).build().run();
+ * </pre>
+ */
+public final class LoadSimulator {
+
+    private static final byte[] STUDENT_NAME = "Student".getBytes(StandardCharsets.UTF_8);
+    private static final long HUB_TICK_MS = 1_000;
+    private static final long MAX_SESSION_MS = 60 * 60 * 1000L; // safety stop
+
+    public static final class Builder {
+        private int students = 300;
+        private long arrivalWindowMillis = 30_000;
+        private long minLatencyMillis = 20;
+        private long maxLatencyMillis = 200;
+        private double lossRate;
+        private double disconnectRate;
+        private boolean fastMode;
+        private long attemptTimeoutMillis = 10_000;
+        private int maxAttempts = 6;
+        private int maxResends = 2;
+        private long resendIntervalMillis = 2_000;
+        private long seed = 1;
+        private int maxActive = 10;
+        private long queueTimeoutMillis = 20_000;
+        private long idleTimeoutMillis = 15_000;
+        private long ackTimeoutMillis = 5_000;
+
+        public Builder setStudents(int students) {
+            this.students = students;
+            return this;
+        }
+
+        /** Students start their first attempt at uniformly random times in this window. */
+        public Builder setArrivalWindow(long millis) {
+            this.arrivalWindowMillis = millis;
+            return this;
+        }
+
+        /** One-way radio latency per message. */
+        public Builder setLatency(long minMillis, long maxMillis) {
+            this.minLatencyMillis = minMillis;
+            this.maxLatencyMillis = maxMillis;
+            return this;
+        }
+
+        public Builder setLossRate(double lossRate) {
+            this.lossRate = lossRate;
+            return this;
+        }
+
+        public Builder setDisconnectRate(double disconnectRate) {
+            this.disconnectRate = disconnectRate;
+            return this;
+        }
+
+        public Builder setFastMode(boolean fastMode) {
+            this.fastMode = fastMode;
+            return this;
+        }
+
+        public Builder setRetries(int maxAttempts, long attemptTimeoutMillis) {
+            this.maxAttempts = maxAttempts;
+            this.attemptTimeoutMillis = attemptTimeoutMillis;
+            return this;
+        }
+
+        /** Resends of the check-in over one link while no reply has come back. */
+        public Builder setResends(int maxResends, long intervalMillis) {
+            this.maxResends = maxResends;
+            this.resendIntervalMillis = intervalMillis;
+            return this;
+        }
+
+        public Builder setHubLimits(int maxActive, long queueTimeoutMillis, long idleTimeoutMillis, long ackTimeoutMillis) {
+            this.maxActive = maxActive;
+            this.queueTimeoutMillis = queueTimeoutMillis;
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            this.ackTimeoutMillis = ackTimeoutMillis;
+            return this;
+        }
+
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public LoadSimulator build() {
+            return new LoadSimulator(this);
+        }
+    }
+
+    public static final class Result {
+        public final int students;
+        public final int marked;
+        public final int gaveUp;
+        public final int attempts;
+        public final int rosterSize;
+        /** Virtual time from the start of the session to the last ACK. */
+        public final long durationMillis;
+        /** Hub metrics plus "student.check_in": first attempt to ACK, per student. */
+        public final SessionTelemetry telemetry;
+
+        Result(int students, int marked, int gaveUp, int attempts, int rosterSize, long durationMillis,
+               SessionTelemetry telemetry) {
+            this.students = students;
+            this.marked = marked;
+            this.gaveUp = gaveUp;
+            this.attempts = attempts;
+            this.rosterSize = rosterSize;
+            this.durationMillis = durationMillis;
+            this.telemetry = telemetry;
+        }
+
+        /** Check-ins per minute over the whole run. */
+        public double perMinute() {
+            return durationMillis <= 0 ? 0 : marked * 60_000.0 / durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            LatencyHistogram checkIn = telemetry.histogram("student.check_in");
+            return String.format(Locale.US,
+                    "%d/%d marked (%d gave up) in %.1fs, %d attempts, %.0f/min, check-in p50 %.2fs p99 %.2fs",
+                    marked, students, gaveUp, durationMillis / 1000.0, attempts, perMinute(),
+                    checkIn.percentileMicros(50) / 1e6, checkIn.percentileMicros(99) / 1e6);
+        }
+    }
+
+    private final Builder config;
+    private final Random random;
+    private final InMemoryTransport transport;
+    private final SessionTelemetry telemetry = new SessionTelemetry();
+    private final Roster roster = new Roster();
+    private final AttendanceHub hub;
+    private final Backoff backoff;
+    private final HandshakeSeal studentSeal;
+    private int finished;
+    private int marked;
+    private int gaveUp;
+    private int attempts;
+    private long lastAck;
+
+    private LoadSimulator(Builder config) {
+        this.config = config;
+        this.random = new Random(config.seed);
+        this.transport = new InMemoryTransport(random, config.minLatencyMillis, config.maxLatencyMillis,
+                config.lossRate, config.disconnectRate);
+        this.hub = new AttendanceHub(transport, new AttendanceHub.Listener() {
+            @Override
+            public void onAdmitted(CheckIn checkIn) {}
+
+            @Override
+            public void onAccepted(CheckIn checkIn) {
+                roster.add(checkIn);
+            }
+
+            @Override
+            public void onRefused(CheckIn checkIn, String message) {}
+        }, transport::now, telemetry, config.maxActive, config.queueTimeoutMillis,
+                config.idleTimeoutMillis, config.ackTimeoutMillis);
+        transport.setListener(hub);
+        this.backoff = new Backoff(500, 8_000, random);
+
+        if (config.fastMode) {
+            SessionDescriptor session = new SessionDescriptor("SIM101", random.nextInt(), random.nextInt(),
+                    0xffffffffL, SessionDescriptor.FLAG_FAST_CHECK_IN);
+            hub.setHandshakeSeal(new HandshakeSeal(session));
+            studentSeal = new HandshakeSeal(session); // each phone has its own
+        } else {
+            studentSeal = null;
+        }
+    }
+
+    /** Runs the session to completion. A simulator is single-use. */
+    public Result run() {
+        for (int i = 0; i < config.students; i++) {
+            SimStudent student = new SimStudent(String.format(Locale.US, "21BCE%03d", i), random.nextLong(),
+                    random.nextLong());
+            transport.schedule((long) (random.nextDouble() * config.arrivalWindowMillis), student::start);
+        }
+        transport.schedule(HUB_TICK_MS, this::tick);
+        transport.run(() -> finished == config.students, MAX_SESSION_MS);
+        return new Result(config.students, marked, gaveUp, attempts, roster.size(), lastAck, telemetry);
+    }
+
+    private void tick() {
+        hub.tick();
+        if (finished < config.students) transport.schedule(HUB_TICK_MS, this::tick);
+    }
+
+    public static void main(String[] args) {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        for (boolean fast : Arrays.asList(false, true)) {
+            for (double loss : new double[]{0, 0.05, 0.15}) {
+                Result result = new Builder().setStudents(students).setFastMode(fast)
+                        .setLossRate(loss).setDisconnectRate(loss / 2).build().run();
+                System.out.println((fast ? "fast " : "payload ") + "loss=" + loss + ": " + result);
+            }
+        }
+    }
+
+    private final class SimStudent {
+        final String rollNo;
+        final long deviceHash;
+        final long checkInId; // one per check-in, however many attempts it takes
+        long firstTry;
+        int tries;
+        boolean done;
+
+        SimStudent(String rollNo, long deviceHash, long checkInId) {
+            this.rollNo = rollNo;
+            this.deviceHash = deviceHash;
+            this.checkInId = checkInId;
+        }
+
+        void start() {
+            firstTry = transport.now();
+            attempt();
+        }
+
+        void attempt() {
+            tries++;
+            attempts++;
+            Attempt attempt = new Attempt(this);
+            byte[] frame = CheckInCodec.encode(rollNo, deviceHash, transport.now(), checkInId,
+                    CheckInCodec.FLAG_FRAMED_REPLY);
+            attempt.frame = frame;
+            attempt.endpointId = transport.requestConnection(studentSeal != null ? studentSeal.seal(frame) : STUDENT_NAME, attempt);
+            transport.schedule(config.attemptTimeoutMillis, () -> {
+                if (attempt.live) attempt.fail(); // nothing came back in time
+            });
+        }
+
+        void retry() {
+            if (done) return;
+            if (tries >= config.maxAttempts) {
+                finish(false);
+                return;
+            }
+            transport.schedule(backoff.delayMillis(tries - 1), this::attempt);
+        }
+
+        void finish(boolean success) {
+            if (done) return;
+            done = true;
+            finished++;
+            if (success) {
+                marked++;
+                lastAck = transport.now();
+                telemetry.recordMicros("student.check_in", (transport.now() - firstTry) * 1000);
+            } else {
+                gaveUp++;
+            }
+        }
+    }
+
+    private final class Attempt implements InMemoryTransport.Student {
+        final SimStudent student;
+        String endpointId;
+        byte[] frame;
+        boolean live = true;
+
+        Attempt(SimStudent student) {
+            this.student = student;
+        }
+
+        @Override
+        public void onConnectionResult(boolean connected) {
+            if (!live) return;
+            if (!connected) {
+                fail(); // queue timeout, or a refused fast check-in
+            } else if (studentSeal != null) {
+                // Fast mode: being accepted is the ACK
+                close();
+                student.finish(true);
+            } else {
+                send(0);
+            }
+        }
+
+        // The hub answers a resend like the original, so a lost check-in or ACK costs a resend, not a row
+        void send(int resends) {
+            if (!live) return;
+            if (resends > 0) telemetry.increment("student.resends");
+            transport.sendFromStudent(endpointId, frame);
+            if (resends < config.maxResends) {
+                transport.schedule(config.resendIntervalMillis, () -> send(resends + 1));
+            }
+        }
+
+        @Override
+        public void onPayload(byte[] bytes) {
+            if (!live) return;
+            CheckInCodec.Reply reply = CheckInCodec.decodeReply(bytes);
+            if (reply == null || reply.checkInId != student.checkInId) {
+                telemetry.increment("student.uncorrelated_replies");
+                return; // not an answer to this check-in
+            }
+            close();
+            // A refusal comes from the proxy checks; retrying won't help
+            student.finish(reply.isMarked());
+        }
+
+        @Override
+        public void onDisconnected() {
+            if (live) {
+                live = false;
+                student.retry();
+            }
+        }
+
+        void fail() {
+            close();
+            student.retry();
+        }
+
+        void close() {
+            live = false;
+            transport.disconnectFromStudent(endpointId);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.nirma.attendance;
+
+import java.util.Arrays;
+
+/**
+ * long -> int counts with open addressing, so a semester of tallies is two flat arrays
+ * instead of a boxed entry per student. Key 0 is reserved as the empty marker. Not thread safe.
+ */
+final class LongIntMap {
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /** The value for {@code key}, or 0. */
+    int get(long key) {
+        int i = slot(keys, mask, key);
+        return keys[i] == key ? values[i] : 0;
+    }
+
+    /** Adds {@code delta} to the value for {@code key} (0 if absent) and returns the new value. */
+    int add(long key, int delta) {
+        if (key == 0) throw new IllegalArgumentException("key 0 is reserved");
+        int i = slot(keys, mask, key);
+        if (keys[i] != key) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                i = slot(keys, mask, key);
+            }
+            keys[i] = key;
+            size++;
+        }
+        return values[i] += delta;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Slots to walk with {@link #keyAt}/{@link #valueAt}; empty slots have key 0. */
+    int capacity() {
+        return keys.length;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    int valueAt(int slot) {
+        return values[slot];
+    }
+
+    void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, 0L);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = slot(keys, mask, oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /** Linear probe from the key's hash to its slot or the first empty one. */
+    private static int slot(long[] keys, int mask, long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        int i = (int) (h ^ (h >>> 32)) & mask;
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+}
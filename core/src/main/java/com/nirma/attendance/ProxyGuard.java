@@ -0,0 +1,71 @@
+package com.nirma.attendance;
+
+import java.util.HashMap;
+
+/**
+ * In-session duplicate and proxy check on the professor's phone. Keeps roll -> check-in and
+ * device -> roll maps, so every decision is two hash lookups, and it runs before a
+ * check-in reaches the roster or the server. A check-in that is admitted holds its roll
+ * number and device until {@link #release} (e.g. the server turned it down).
+ */
+public class ProxyGuard {
+
+    public enum Verdict {
+        /** New roll number from a new device. Now reserved. */
+        ACCEPT,
+        /** Same student, same phone, again (e.g. the ACK was lost). Re-ACK, don't add. */
+        REPEAT,
+        /** Roll number was already marked from a different phone. */
+        ROLL_TAKEN,
+        /** This phone already marked a different roll number. */
+        DEVICE_REUSED
+    }
+
+    private final HashMap<String, CheckIn> byRoll = new HashMap<>();
+    private final HashMap<Long, String> rollByDevice = new HashMap<>();
+
+    public Verdict admit(CheckIn checkIn) {
+        CheckIn first = byRoll.get(checkIn.rollNo);
+        if (first != null) {
+            return first.deviceHash == checkIn.deviceHash ? Verdict.REPEAT : Verdict.ROLL_TAKEN;
+        }
+        if (rollByDevice.containsKey(checkIn.deviceHash)) {
+            return Verdict.DEVICE_REUSED;
+        }
+        restore(checkIn);
+        return Verdict.ACCEPT;
+    }
+
+    /** Marks a check-in as taken without judging it, e.g. when replaying the journal. */
+    public void restore(CheckIn checkIn) {
+        byRoll.put(checkIn.rollNo, checkIn);
+        rollByDevice.put(checkIn.deviceHash, checkIn.rollNo);
+    }
+
+    /** The check-in that took this roll number, e.g. to answer a REPEAT with its time; null if none. */
+    public CheckIn admitted(String rollNo) {
+        return byRoll.get(rollNo);
+    }
+
+    /** Frees an admitted check-in's roll number and device again. */
+    public void release(CheckIn checkIn) {
+        CheckIn first = byRoll.get(checkIn.rollNo);
+        if (first != null && first.deviceHash == checkIn.deviceHash) {
+            byRoll.remove(checkIn.rollNo);
+            rollByDevice.remove(checkIn.deviceHash);
+        }
+    }
+
+    public static String describe(Verdict verdict) {
+        switch (verdict) {
+            case ROLL_TAKEN: return "Error: this roll number was already marked from another phone";
+            case DEVICE_REUSED: return "Error: this phone already marked attendance for another student";
+            default: return "SUCCESS";
+        }
+    }
+
+    public void clear() {
+        byRoll.clear();
+        rollByDevice.clear();
+    }
+}
@@ -0,0 +1,58 @@
+package com.nirma.attendance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Check-ins for one session in arrival order, with an O(1) lookup by roll number.
+ * Not thread safe: the professor side only touches it from the main thread.
+ */
+public class Roster {
+
+    private final ArrayList<CheckIn> entries = new ArrayList<>();
+    private final HashMap<String, Integer> indexByRoll = new HashMap<>();
+
+    /** Appends the check-in, or returns false if that roll number is already present. */
+    public boolean add(CheckIn checkIn) {
+        if (indexByRoll.containsKey(checkIn.rollNo)) {
+            return false;
+        }
+        indexByRoll.put(checkIn.rollNo, entries.size());
+        entries.add(checkIn);
+        return true;
+    }
+
+    public boolean contains(String rollNo) {
+        return indexByRoll.containsKey(rollNo);
+    }
+
+    /** Returns the check-in for this roll number, or null if the student hasn't arrived. */
+    public CheckIn find(String rollNo) {
+        Integer position = indexByRoll.get(rollNo);
+        return position == null ? null : entries.get(position);
+    }
+
+    public CheckIn get(int position) {
+        return entries.get(position);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /** Read-only view in arrival order. */
+    public List<CheckIn> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public void clear() {
+        entries.clear();
+        indexByRoll.clear();
+    }
+}
@@ -0,0 +1,167 @@
+package com.nirma.attendance;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Writes a roster snapshot on a background executor, one record at a time, and reports
+ * back on {@code callbackExecutor} (the main thread in the app). The output stream is
+ * opened on the worker too, and is always closed, including on failure or cancel.
+ */
+public class RosterExporter {
+
+    /** Progress is reported at most once per this many records. */
+    static final int PROGRESS_STEP = 256;
+
+    public interface Listener {
+        void onProgress(int written, int total);
+        void onFinished(int written);
+        void onCancelled(int written);
+        void onFailed(Exception error);
+    }
+
+    private final ExecutorService executor;
+    private final Executor callbackExecutor;
+
+    public RosterExporter(ExecutorService executor, Executor callbackExecutor) {
+        this.executor = executor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Starts writing {@code snapshot}. The list must not change while the export runs;
+     * pass a copy of the roster's entries, which only copies references.
+     */
+    public Task export(List<CheckIn> snapshot, ExportFormat format, Callable<OutputStream> target, Listener listener) {
+        Task task = new Task(listener);
+        task.future = executor.submit(() -> run(task, snapshot, format, target));
+        return task;
+    }
+
+    /** Writes {@link SessionTelemetry#writeCsv} on the same worker; reports onFinished(0) when done. */
+    public Task exportTelemetry(SessionTelemetry telemetry, Callable<OutputStream> target, Listener listener) {
+        Task task = new Task(listener);
+        task.future = executor.submit(() -> {
+            try (OutputStream out = target.call()) {
+                if (out == null) {
+                    throw new IOException("Could not open output file");
+                }
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                telemetry.writeCsv(writer);
+                writer.flush();
+                callbackExecutor.execute(() -> task.end(l -> l.onFinished(0)));
+            } catch (Exception e) {
+                callbackExecutor.execute(() -> task.end(l -> l.onFailed(e)));
+            }
+        });
+        return task;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Task task, List<CheckIn> snapshot, ExportFormat format, Callable<OutputStream> target) {
+        int total = snapshot.size();
+        int written = 0;
+        try {
+            // The writer closes the stream too, but a failed flush can skip that, so close it here as well
+            try (OutputStream out = target.call()) {
+                if (out == null) {
+                    throw new IOException("Could not open output file");
+                }
+                try (ExportFormat.RecordWriter writer = format.open(out)) {
+                    for (CheckIn checkIn : snapshot) {
+                        if (task.cancelled.get()) break;
+                        writer.write(checkIn);
+                        written++;
+                        if (written % PROGRESS_STEP == 0) {
+                            int progress = written;
+                            callbackExecutor.execute(() -> task.progress(progress, total));
+                        }
+                    }
+                }
+            }
+            int count = written;
+            if (task.cancelled.get()) {
+                callbackExecutor.execute(() -> task.end(l -> l.onCancelled(count)));
+            } else {
+                callbackExecutor.execute(() -> task.end(l -> l.onFinished(count)));
+            }
+        } catch (Exception e) {
+            int count = written;
+            if (task.cancelled.get() || e instanceof InterruptedIOException) {
+                callbackExecutor.execute(() -> task.end(l -> l.onCancelled(count)));
+            } else {
+                callbackExecutor.execute(() -> task.end(l -> l.onFailed(e)));
+            }
+        }
+    }
+
+    public static final class Task {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private volatile Future<?> future;
+        private Listener listener; // guarded by this
+        private Consumer<Listener> missedEnd; // how it ended, while nobody was listening; guarded by this
+
+        private Task(Listener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Hands the export to another listener, e.g. the screen recreated after a rotation;
+         * null detaches. How it ended isn't lost meanwhile: a listener attached afterwards
+         * hears it at once, on the calling thread. Progress while detached is dropped.
+         */
+        public void setListener(Listener listener) {
+            Consumer<Listener> missed;
+            synchronized (this) {
+                this.listener = listener;
+                missed = listener == null ? null : missedEnd;
+                if (missed != null) missedEnd = null;
+            }
+            if (missed != null) missed.accept(listener);
+        }
+
+        private void progress(int written, int total) {
+            Listener l;
+            synchronized (this) {
+                l = listener;
+            }
+            if (l != null) l.onProgress(written, total);
+        }
+
+        private void end(Consumer<Listener> outcome) {
+            Listener l;
+            synchronized (this) {
+                l = listener;
+                if (l == null) {
+                    missedEnd = outcome;
+                    return;
+                }
+            }
+            outcome.accept(l);
+        }
+
+        /** Stops after the record being written; the partial file is still closed. */
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isDone() {
+            Future<?> f = future;
+            return f != null && f.isDone();
+        }
+    }
+}
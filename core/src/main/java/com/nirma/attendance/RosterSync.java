@@ -0,0 +1,230 @@
+package com.nirma.attendance;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies a session's check-ins to a remote store (Firestore in the app) in the background.
+ * The session's {@link AttendanceJournal} is the durable queue: a small checkpoint file next
+ * to it records the session key and how many journal records have been written, so after a
+ * restart or a stretch offline the sync picks up where it stopped. Check-ins offered while
+ * a write is in flight, or within the linger delay, go out together in batches of up to
+ * {@code maxBatch}. Failed writes are retried with {@link Backoff}, with a longer one when
+ * the store reports its quota is used up.
+ *
+ * {@link #offer} only queues, so it is safe on the check-in path; every write and checkpoint
+ * happens on {@code worker}. A write must be idempotent (e.g. one document per roll number):
+ * after a crash between a write and its checkpoint, the batch is written again.
+ */
+public final class RosterSync {
+
+    public interface Backend {
+        /** Stores every check-in in {@code batch} under {@code sessionKey}, all or nothing. */
+        void write(String sessionKey, List<CheckIn> batch) throws IOException;
+    }
+
+    /** Thrown by a {@link Backend} when the store is refusing writes for now, e.g. RESOURCE_EXHAUSTED. */
+    public static class QuotaExceededException extends IOException {
+        public QuotaExceededException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /** Firestore's limit on writes in one batch. */
+    public static final int MAX_BATCH = 500;
+
+    private final Backend backend;
+    private final File checkpointFile;
+    private final int maxBatch;
+    private final long lingerMillis;
+    private final Backoff backoff;
+    private final Backoff quotaBackoff;
+    private final ScheduledExecutorService worker;
+    private final SessionTelemetry telemetry;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<CheckIn> pending = new ArrayDeque<>();
+    private String sessionKey;
+    private int synced; // journal records written, counted in journal order
+    private int failures; // consecutive; only touched on the worker
+    private boolean flushScheduled; // also set while a write is in flight
+    private boolean started;
+
+    public RosterSync(Backend backend, File checkpointFile, int maxBatch, long lingerMillis, Backoff backoff,
+                      Backoff quotaBackoff, ScheduledExecutorService worker, SessionTelemetry telemetry) {
+        this.backend = backend;
+        this.checkpointFile = checkpointFile;
+        this.maxBatch = Math.max(1, Math.min(maxBatch, MAX_BATCH));
+        this.lingerMillis = lingerMillis;
+        this.backoff = backoff;
+        this.quotaBackoff = quotaBackoff;
+        this.worker = worker;
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Loads the checkpoint and queues the journalled check-ins it doesn't cover yet. The
+     * first start for a journal takes {@code newSessionKey} and saves it; later ones keep it.
+     *
+     * @param journalled every check-in replayed from the journal, in journal order
+     */
+    public void start(String newSessionKey, List<CheckIn> journalled) throws IOException {
+        String key = newSessionKey;
+        int done = 0;
+        if (checkpointFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(checkpointFile), StandardCharsets.UTF_8))) {
+                String savedKey = reader.readLine();
+                String savedCount = reader.readLine();
+                if (savedKey != null && !savedKey.isEmpty()) key = savedKey;
+                if (savedCount != null) done = Integer.parseInt(savedCount.trim());
+            } catch (NumberFormatException e) {
+                done = 0; // write everything again rather than skip any
+            }
+        }
+        // A torn journal tail can leave fewer records than were once synced
+        done = Math.min(Math.max(done, 0), journalled.size());
+        synchronized (lock) {
+            if (started) throw new IllegalStateException("Already started");
+            started = true;
+            sessionKey = key;
+            synced = done;
+            pending.addAll(journalled.subList(done, journalled.size()));
+        }
+        saveCheckpoint(key, done);
+        if (pendingCount() > 0) schedule(0);
+    }
+
+    /** Queues a check-in just appended to the journal. Never blocks. */
+    public void offer(CheckIn checkIn) {
+        synchronized (lock) {
+            if (!started) throw new IllegalStateException("Not started");
+            pending.add(checkIn);
+        }
+        schedule(lingerMillis);
+    }
+
+    public String sessionKey() {
+        synchronized (lock) {
+            return sessionKey;
+        }
+    }
+
+    public int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public int syncedCount() {
+        synchronized (lock) {
+            return synced;
+        }
+    }
+
+    /** Stops writing; what's still pending stays covered by the journal and checkpoint. */
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // --- WORKER ---
+    private void schedule(long delayMillis) {
+        synchronized (lock) {
+            if (flushScheduled || worker.isShutdown()) return;
+            flushScheduled = true;
+            try {
+                worker.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shut down meanwhile; the journal still has it
+            }
+        }
+    }
+
+    private void flush() {
+        String key;
+        ArrayList<CheckIn> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                flushScheduled = false;
+                return;
+            }
+            key = sessionKey;
+            batch = new ArrayList<>(Math.min(pending.size(), maxBatch));
+            Iterator<CheckIn> it = pending.iterator();
+            while (batch.size() < maxBatch && it.hasNext()) {
+                batch.add(it.next());
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            backend.write(key, batch);
+        } catch (QuotaExceededException e) {
+            telemetry.increment("sync.quota_exceeded");
+            retryAfter(quotaBackoff);
+            return;
+        } catch (IOException | RuntimeException e) {
+            telemetry.increment("sync.failed_writes");
+            retryAfter(backoff);
+            return;
+        }
+        telemetry.recordSince("sync.write", start);
+        telemetry.peak("sync.largest_batch", batch.size());
+        failures = 0;
+
+        int done;
+        boolean more;
+        synchronized (lock) {
+            for (int i = 0; i < batch.size(); i++) pending.poll();
+            synced += batch.size();
+            done = synced;
+            more = !pending.isEmpty();
+            flushScheduled = false;
+        }
+        try {
+            saveCheckpoint(key, done);
+        } catch (IOException e) {
+            // Only costs a repeat of this batch after a restart
+            telemetry.increment("sync.checkpoint_errors");
+        }
+        // Whatever arrived during the write has waited long enough
+        if (more) schedule(0);
+    }
+
+    // Still flushScheduled, so nothing offered meanwhile can cut the wait short
+    private void retryAfter(Backoff policy) {
+        long delay = policy.delayMillis(failures++);
+        synchronized (lock) {
+            if (worker.isShutdown()) return;
+            try {
+                worker.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shut down meanwhile; the journal still has it
+            }
+        }
+    }
+
+    private void saveCheckpoint(String key, int count) throws IOException {
+        File tmp = new File(checkpointFile.getPath() + ".tmp");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            out.write(key + "\n" + count + "\n");
+        }
+        if (!tmp.renameTo(checkpointFile)) {
+            throw new IOException("Could not replace " + checkpointFile);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.nirma.attendance;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-student attendance over a semester of sessions, read from CSV exports or archived
+ * journals. Sessions are streamed one line or record at a time and never held in memory;
+ * each worker keeps its own tallies keyed by the roll number packed into a long (see
+ * {@link #pack}), and the workers' tallies are merged at the end. A student counts once per
+ * session however many rows they have in it.
+ *
+ * <pre>
+ *   Report report = new SemesterAggregator(pool, 4).aggregate(sources, classList);
+ *   List&lt;String&gt; defaulters = report.defaulters(75);
+ * </pre>
+ */
+public final class SemesterAggregator {
+
+    /** One session's check-ins, e.g. an exported CSV or an archived journal. */
+    public interface Source {
+        String name();
+
+        /** Calls {@code sink} for every row; repeats within the session are fine. */
+        void read(RollSink sink) throws IOException;
+    }
+
+    public interface RollSink {
+        void onRoll(String rollNo);
+    }
+
+    private final ExecutorService workers;
+    private final int parallelism;
+
+    /**
+     * @param workers     runs all but one of the parsing workers; the caller runs the last
+     * @param parallelism how many sessions to parse at once, e.g. the number of cores
+     */
+    public SemesterAggregator(ExecutorService workers, int parallelism) {
+        this.workers = workers;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // --- SOURCES ---
+    /**
+     * A CSV with roll numbers in the first column, as written by {@link ExportFormat#CSV}.
+     * A first row mentioning "roll" is taken as the header.
+     */
+    public static Source csv(String name, Callable<InputStream> open) {
+        return new Source() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public void read(RollSink sink) throws IOException {
+                try (InputStream in = open.call()) {
+                    if (in == null) throw new IOException("Could not open " + name);
+                    readCsv(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 16 * 1024), sink);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+    }
+
+    /** A session journal archived by the professor's phone. */
+    public static Source journal(File file) {
+        return new Source() {
+            @Override
+            public String name() {
+                return file.getName();
+            }
+
+            @Override
+            public void read(RollSink sink) throws IOException {
+                if (!file.exists()) throw new IOException(file + " is missing");
+                AttendanceJournal.replay(file, checkIn -> sink.onRoll(checkIn.rollNo));
+            }
+        };
+    }
+
+    static void readCsv(BufferedReader reader, RollSink sink) throws IOException {
+        ArrayList<String> fields = new ArrayList<>();
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (first) {
+                first = false;
+                line = EnrolmentIndex.stripBom(line);
+                if (line.toLowerCase(Locale.ROOT).contains("roll")) continue;
+            }
+            String roll;
+            if (line.startsWith("\"")) {
+                EnrolmentIndex.splitCsvLine(line, fields);
+                roll = fields.get(0);
+            } else {
+                int comma = line.indexOf(',');
+                roll = comma < 0 ? line : line.substring(0, comma);
+            }
+            sink.onRoll(ExportFormat.restoreFormula(roll));
+        }
+    }
+
+    // --- AGGREGATION ---
+    /**
+     * Reads every source and tallies sessions attended per student. Blocks until done.
+     * Sources that fail to read are left out of the session count and listed in the report.
+     *
+     * @param classList if not null, enrolled students who never attended are reported at 0
+     */
+    public Report aggregate(List<Source> sources, EnrolmentIndex classList) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        int workerCount = Math.min(parallelism, Math.max(1, sources.size()));
+        ArrayList<Future<Tally>> futures = new ArrayList<>();
+        for (int i = 1; i < workerCount; i++) {
+            futures.add(workers.submit(() -> new Tally().drain(sources, next)));
+        }
+        ArrayList<Tally> tallies = new ArrayList<>();
+        tallies.add(new Tally().drain(sources, next)); // this thread is a worker too
+        try {
+            for (Future<Tally> future : futures) {
+                tallies.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Aggregation worker failed", e.getCause());
+        } finally {
+            for (Future<Tally> future : futures) future.cancel(true);
+        }
+        return merge(tallies, classList);
+    }
+
+    private static Report merge(List<Tally> tallies, EnrolmentIndex classList) {
+        Tally total = tallies.get(0);
+        for (int t = 1; t < tallies.size(); t++) {
+            Tally tally = tallies.get(t);
+            for (int i = 0; i < tally.counts.capacity(); i++) {
+                long key = tally.counts.keyAt(i);
+                if (key != 0) total.counts.add(key, tally.counts.valueAt(i));
+            }
+            for (Map.Entry<String, Integer> entry : tally.unpackable.entrySet()) {
+                total.unpackable.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+            total.sessions += tally.sessions;
+            total.failed.addAll(tally.failed);
+        }
+        if (classList != null) {
+            for (int slot = 0; slot < classList.size(); slot++) {
+                total.count(classList.rollAt(slot), 0);
+            }
+        }
+
+        int students = total.counts.size() + total.unpackable.size();
+        String[] rolls = new String[students];
+        int n = 0;
+        for (int i = 0; i < total.counts.capacity(); i++) {
+            long key = total.counts.keyAt(i);
+            if (key != 0) rolls[n++] = unpack(key);
+        }
+        for (String roll : total.unpackable.keySet()) rolls[n++] = roll;
+        Arrays.sort(rolls);
+        int[] attended = new int[students];
+        for (int i = 0; i < students; i++) {
+            long key = pack(rolls[i]);
+            attended[i] = key != 0 ? total.counts.get(key) : total.unpackable.get(rolls[i]);
+        }
+        Collections.sort(total.failed);
+        return new Report(total.sessions, rolls, attended, total.failed);
+    }
+
+    /** One worker's tallies. Also the place a session is deduplicated before it counts. */
+    private static final class Tally implements RollSink {
+        final LongIntMap counts = new LongIntMap(1024);
+        final HashMap<String, Integer> unpackable = new HashMap<>(); // rolls that don't fit in a long
+        final ArrayList<String> failed = new ArrayList<>();
+        int sessions;
+        // The session being read; only committed to the counts once it was read in full
+        private final LongIntMap session = new LongIntMap(512);
+        private final HashSet<String> sessionUnpackable = new HashSet<>();
+
+        Tally drain(List<Source> sources, AtomicInteger next) {
+            int i;
+            while ((i = next.getAndIncrement()) < sources.size()) {
+                if (Thread.currentThread().isInterrupted()) break;
+                Source source = sources.get(i);
+                session.clear();
+                sessionUnpackable.clear();
+                try {
+                    source.read(this);
+                } catch (IOException | RuntimeException e) {
+                    failed.add(source.name());
+                    continue;
+                }
+                sessions++;
+                for (int slot = 0; slot < session.capacity(); slot++) {
+                    long key = session.keyAt(slot);
+                    if (key != 0) counts.add(key, 1);
+                }
+                for (String roll : sessionUnpackable) {
+                    unpackable.merge(roll, 1, Integer::sum);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public void onRoll(String rollNo) {
+            String roll = normalize(rollNo);
+            if (roll.isEmpty()) return;
+            long key = pack(roll);
+            if (key != 0) {
+                if (session.get(key) == 0) session.add(key, 1);
+            } else {
+                sessionUnpackable.add(roll);
+            }
+        }
+
+        void count(String rollNo, int delta) {
+            String roll = normalize(rollNo);
+            if (roll.isEmpty()) return;
+            long key = pack(roll);
+            if (key != 0) {
+                counts.add(key, delta);
+            } else {
+                unpackable.merge(roll, delta, Integer::sum);
+            }
+        }
+    }
+
+    // --- ROLL NUMBER KEYS ---
+    /** Longest roll number {@link #pack} can hold. */
+    static final int MAX_PACKED_CHARS = 12;
+
+    static String normalize(String rollNo) {
+        return rollNo.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Packs an upper-case roll number of up to 12 digits and letters into a long, base 37
+     * with digits 1..36 so that no roll number packs to 0. Returns 0 if it doesn't fit.
+     */
+    static long pack(String roll) {
+        int length = roll.length();
+        if (length == 0 || length > MAX_PACKED_CHARS) return 0;
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            char c = roll.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0' + 1;
+            } else if (c >= 'A' && c <= 'Z') {
+                digit = c - 'A' + 11;
+            } else {
+                return 0;
+            }
+            key = key * 37 + digit;
+        }
+        return key;
+    }
+
+    static String unpack(long key) {
+        char[] chars = new char[MAX_PACKED_CHARS];
+        int start = chars.length;
+        while (key != 0) {
+            int digit = (int) (key % 37);
+            chars[--start] = digit <= 10 ? (char) ('0' + digit - 1) : (char) ('A' + digit - 11);
+            key /= 37;
+        }
+        return new String(chars, start, chars.length - start);
+    }
+
+    // --- REPORT ---
+    public static final class Report {
+        /** Sessions read in full; the denominator of every percentage. */
+        public final int sessions;
+        /** Names of sources that could not be read. */
+        public final List<String> failedSources;
+        private final String[] rolls; // sorted
+        private final int[] attended;
+
+        Report(int sessions, String[] rolls, int[] attended, List<String> failedSources) {
+            this.sessions = sessions;
+            this.rolls = rolls;
+            this.attended = attended;
+            this.failedSources = Collections.unmodifiableList(failedSources);
+        }
+
+        public int students() {
+            return rolls.length;
+        }
+
+        public String rollAt(int i) {
+            return rolls[i];
+        }
+
+        public int attendedAt(int i) {
+            return attended[i];
+        }
+
+        public double percentAt(int i) {
+            return sessions == 0 ? 0 : attended[i] * 100.0 / sessions;
+        }
+
+        /** Sessions attended by this roll number, or -1 if it never appeared. */
+        public int attended(String rollNo) {
+            int i = Arrays.binarySearch(rolls, normalize(rollNo));
+            return i < 0 ? -1 : attended[i];
+        }
+
+        /** Roll numbers below {@code minPercent} attendance, in roll order. */
+        public List<String> defaulters(double minPercent) {
+            ArrayList<String> result = new ArrayList<>();
+            for (int i = 0; i < rolls.length; i++) {
+                if (percentAt(i) < minPercent) result.add(rolls[i]);
+            }
+            return result;
+        }
+
+        /** One row per student, flagging those below {@code minPercent}. */
+        public void writeCsv(Appendable out, double minPercent) throws IOException {
+            out.append("Roll Number,Attended,Sessions,Percent,Below ")
+                    .append(String.format(Locale.US, "%.0f%%", minPercent)).append('\n');
+            for (int i = 0; i < rolls.length; i++) {
+                double percent = percentAt(i);
+                appendField(out, rolls[i]).append(',')
+                        .append(Integer.toString(attended[i])).append(',')
+                        .append(Integer.toString(sessions)).append(',')
+                        .append(String.format(Locale.US, "%.1f", percent)).append(',')
+                        .append(percent < minPercent ? "yes" : "no").append('\n');
+            }
+        }
+
+        private static Appendable appendField(Appendable out, String field) throws IOException {
+            String value = ExportFormat.neutralizeFormula(field);
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return out.append(value);
+            }
+            return out.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+
+        @Override
+        public String toString() {
+            return students() + " students over " + sessions + " sessions"
+                    + (failedSources.isEmpty() ? "" : " (" + failedSources.size() + " unreadable)");
+        }
+    }
+}
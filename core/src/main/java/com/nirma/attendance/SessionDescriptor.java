@@ -0,0 +1,115 @@
+package com.nirma.attendance;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * What the professor advertises as Nearby endpoint info, so a student can tell their own
+ * classroom from the others in the building before connecting. Big-endian:
+ *
+ * <pre>
+ *   0  magic       'P' 'S'
+ *   2  version     1
+ *   3  flags       FLAG_*
+ *   4  courseLen   1..MAX_COURSE_BYTES
+ *   5  courseCode  upper-case ASCII
+ *   .  sessionId   4 bytes
+ *   .  nonce       4 bytes, fresh every time advertising starts
+ *   .  expiresAt   4 bytes, epoch seconds
+ * </pre>
+ */
+public final class SessionDescriptor {
+
+    public static final int FLAG_HUB_VERIFY = 1;
+    /** Students put their check-in in the connection request; see {@link HandshakeSeal}. */
+    public static final int FLAG_FAST_CHECK_IN = 2;
+    public static final int MAX_COURSE_BYTES = 12;
+
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5;
+    private static final int TRAILER_BYTES = 12;
+
+    public final String courseCode;
+    public final int sessionId;
+    public final int nonce;
+    public final long expiresAtSeconds;
+    public final int flags;
+
+    public SessionDescriptor(String courseCode, int sessionId, int nonce, long expiresAtSeconds, int flags) {
+        this.courseCode = normalizeCourse(courseCode);
+        this.sessionId = sessionId;
+        this.nonce = nonce;
+        this.expiresAtSeconds = expiresAtSeconds;
+        this.flags = flags;
+    }
+
+    /** Course codes compare case- and space-insensitively: " 2cs701" matches "2CS701". */
+    public static String normalizeCourse(String courseCode) {
+        return courseCode.trim().replace(" ", "").toUpperCase(Locale.ROOT);
+    }
+
+    public static boolean isValidCourse(String courseCode) {
+        String normalized = normalizeCourse(courseCode);
+        if (normalized.isEmpty() || normalized.length() > MAX_COURSE_BYTES) return false;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c < 0x21 || c > 0x7e) return false;
+        }
+        return true;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis / 1000 >= expiresAtSeconds;
+    }
+
+    /** True if a student who typed {@code courseCode} should connect to this session. */
+    public boolean matches(String courseCode, long nowMillis) {
+        return this.courseCode.equals(normalizeCourse(courseCode)) && !isExpired(nowMillis);
+    }
+
+    public byte[] encode() {
+        if (!isValidCourse(courseCode)) {
+            throw new IllegalArgumentException("Course code must be 1.." + MAX_COURSE_BYTES + " printable ASCII characters");
+        }
+        byte[] course = courseCode.getBytes(StandardCharsets.US_ASCII);
+        byte[] out = new byte[HEADER_BYTES + course.length + TRAILER_BYTES];
+        out[0] = 'P';
+        out[1] = 'S';
+        out[2] = VERSION;
+        out[3] = (byte) flags;
+        out[4] = (byte) course.length;
+        System.arraycopy(course, 0, out, HEADER_BYTES, course.length);
+        int pos = HEADER_BYTES + course.length;
+        putInt(out, pos, sessionId);
+        putInt(out, pos + 4, nonce);
+        putInt(out, pos + 8, (int) expiresAtSeconds);
+        return out;
+    }
+
+    /** Returns null if {@code info} isn't one of our descriptors (another app, old version). */
+    public static SessionDescriptor decode(byte[] info) {
+        if (info == null || info.length < HEADER_BYTES + 1 + TRAILER_BYTES) return null;
+        if (info[0] != 'P' || info[1] != 'S' || info[2] != VERSION) return null;
+        int length = info[4] & 0xff;
+        if (length == 0 || length > MAX_COURSE_BYTES || info.length != HEADER_BYTES + length + TRAILER_BYTES) return null;
+        String course = new String(info, HEADER_BYTES, length, StandardCharsets.US_ASCII);
+        int pos = HEADER_BYTES + length;
+        return new SessionDescriptor(course, getInt(info, pos), getInt(info, pos + 4),
+                getInt(info, pos + 8) & 0xffffffffL, info[3] & 0xff);
+    }
+
+    private static void putInt(byte[] out, int pos, int value) {
+        out[pos] = (byte) (value >>> 24);
+        out[pos + 1] = (byte) (value >>> 16);
+        out[pos + 2] = (byte) (value >>> 8);
+        out[pos + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] in, int pos) {
+        return ((in[pos] & 0xff) << 24) | ((in[pos + 1] & 0xff) << 16) | ((in[pos + 2] & 0xff) << 8) | (in[pos + 3] & 0xff);
+    }
+}
@@ -0,0 +1,105 @@
+package com.nirma.attendance;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named latency histograms, counters and peak gauges for one session. Names are created
+ * on first use; after that every update is lock-free. Export with {@link #writeCsv(Appendable)}
+ * from any thread.
+ */
+public final class SessionTelemetry {
+
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> peaks = new ConcurrentHashMap<>();
+
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    public void recordMicros(String name, long micros) {
+        histogram(name).record(micros);
+    }
+
+    /** Records the time since {@code startNanos} (a {@link System#nanoTime()} reading). */
+    public void recordSince(String name, long startNanos) {
+        histogram(name).record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public void increment(String name) {
+        counter(name).incrementAndGet();
+    }
+
+    public long count(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /** Tracks the highest value seen, e.g. connected endpoints sampled once a second. */
+    public void peak(String name, long value) {
+        AtomicLong peak = peaks.get(name);
+        if (peak == null) peak = peaks.computeIfAbsent(name, k -> new AtomicLong(Long.MIN_VALUE));
+        long seen;
+        while (value > (seen = peak.get()) && !peak.compareAndSet(seen, value)) {
+            // retry against the newer peak
+        }
+    }
+
+    public void clear() {
+        histograms.clear();
+        counters.clear();
+        peaks.clear();
+    }
+
+    /**
+     * One row per metric, sorted by name:
+     * {@code kind,name,count,mean_ms,p50_ms,p90_ms,p99_ms,max_ms} for histograms, and
+     * {@code kind,name,value} for counters and peaks.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("kind,name,count,mean_ms,p50_ms,p90_ms,p99_ms,max_ms\n");
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram h = e.getValue();
+            out.append("latency,").append(e.getKey()).append(',').append(Long.toString(h.count()))
+                    .append(',').append(millis(h.meanMicros()))
+                    .append(',').append(millis(h.percentileMicros(50)))
+                    .append(',').append(millis(h.percentileMicros(90)))
+                    .append(',').append(millis(h.percentileMicros(99)))
+                    .append(',').append(millis(h.maxMicros())).append('\n');
+        }
+        for (Map.Entry<String, AtomicLong> e : new TreeMap<>(counters).entrySet()) {
+            out.append("counter,").append(e.getKey()).append(',').append(Long.toString(e.getValue().get())).append('\n');
+        }
+        for (Map.Entry<String, AtomicLong> e : new TreeMap<>(peaks).entrySet()) {
+            out.append("peak,").append(e.getKey()).append(',').append(Long.toString(e.getValue().get())).append('\n');
+        }
+    }
+
+    /** e.g. "student.acked n=12 p50=2.1s p99=4.8s" per histogram, for logcat. */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram h = e.getValue();
+            if (sb.length() > 0) sb.append(" · ");
+            sb.append(e.getKey()).append(" n=").append(h.count())
+                    .append(String.format(Locale.US, " p50=%.2fs p99=%.2fs",
+                            h.percentileMicros(50) / 1e6, h.percentileMicros(99) / 1e6));
+        }
+        return sb.toString();
+    }
+
+    private AtomicLong counter(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, k -> new AtomicLong());
+    }
+
+    private static String millis(double micros) {
+        return String.format(Locale.US, "%.3f", micros / 1000.0);
+    }
+}
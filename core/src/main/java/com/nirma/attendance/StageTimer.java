@@ -0,0 +1,63 @@
+package com.nirma.attendance;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Records when each stage of a check-in finished, as an offset from {@link #start()}.
+ * Offsets rather than durations, because stages overlap (the server check runs while
+ * the Nearby connection is still being set up). Single-threaded.
+ * If given a {@link SessionTelemetry}, each mark also lands in the histogram {@code prefix + stage}.
+ */
+public final class StageTimer {
+
+    private final ArrayList<String> stages = new ArrayList<>();
+    private final ArrayList<Long> offsetsMillis = new ArrayList<>();
+    private long startNanos;
+    private boolean started;
+    private final SessionTelemetry telemetry;
+    private final String prefix;
+
+    public StageTimer() {
+        this(null, "");
+    }
+
+    public StageTimer(SessionTelemetry telemetry, String prefix) {
+        this.telemetry = telemetry;
+        this.prefix = prefix;
+    }
+
+    public void start() {
+        stages.clear();
+        offsetsMillis.clear();
+        startNanos = System.nanoTime();
+        started = true;
+    }
+
+    /** Notes that {@code stage} just finished; returns milliseconds since start. */
+    public long mark(String stage) {
+        if (!started) return -1;
+        long elapsed = System.nanoTime() - startNanos;
+        if (telemetry != null) telemetry.recordMicros(prefix + stage, elapsed / 1000);
+        long offset = elapsed / 1_000_000;
+        stages.add(stage);
+        offsetsMillis.add(offset);
+        return offset;
+    }
+
+    /** Offset of the first mark with this name, or -1. */
+    public long offsetMillis(String stage) {
+        int i = stages.indexOf(stage);
+        return i < 0 ? -1 : offsetsMillis.get(i);
+    }
+
+    /** e.g. "found +0.8s · verified +1.3s · connected +2.9s · acked +3.2s" */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < stages.size(); i++) {
+            if (i > 0) sb.append(" · ");
+            sb.append(stages.get(i)).append(String.format(Locale.US, " +%.1fs", offsetsMillis.get(i) / 1000.0));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,41 @@
+package com.nirma.attendance;
+
+/**
+ * Events per minute over a sliding 60 s window, kept in one-second buckets so
+ * recording is O(1) and needs no allocation. Single-threaded.
+ */
+public class ThroughputMeter {
+
+    private static final int BUCKETS = 60;
+
+    private final int[] counts = new int[BUCKETS];
+    private final long[] seconds = new long[BUCKETS];
+    private long total;
+
+    public void record(long nowMillis) {
+        long second = nowMillis / 1000;
+        int slot = (int) (second % BUCKETS);
+        if (seconds[slot] != second) {
+            seconds[slot] = second;
+            counts[slot] = 0;
+        }
+        counts[slot]++;
+        total++;
+    }
+
+    /** Events in the last 60 seconds. */
+    public int perMinute(long nowMillis) {
+        long second = nowMillis / 1000;
+        int sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (second - seconds[i] < BUCKETS && seconds[i] <= second) {
+                sum += counts[i];
+            }
+        }
+        return sum;
+    }
+
+    public long total() {
+        return total;
+    }
+}
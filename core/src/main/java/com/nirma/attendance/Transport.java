@@ -0,0 +1,28 @@
+package com.nirma.attendance;
+
+/**
+ * The professor's side of the radio, as {@link AttendanceHub} sees it. The app implements
+ * it over Nearby Connections; {@link InMemoryTransport} fakes it for tests and the
+ * {@link LoadSimulator}. Calls and callbacks happen on one thread.
+ */
+public interface Transport extends AdmissionController.Hub {
+
+    /** Queues {@code bytes} to a connected endpoint; returns the id later passed to onPayloadDelivered. */
+    long send(String endpointId, byte[] bytes);
+
+    /** What the transport reports back to the hub. */
+    interface Listener {
+        /** A student asked to connect; {@code endpointInfo} is their name or a fast-mode check-in. */
+        void onConnectionRequested(String endpointId, byte[] endpointInfo);
+
+        void onConnectionResult(String endpointId, boolean connected);
+
+        void onPayload(String endpointId, byte[] bytes);
+
+        /** A payload we sent has fully reached the endpoint. */
+        void onPayloadDelivered(String endpointId, long payloadId);
+
+        /** The link dropped or the student hung up. Not called for our own disconnects. */
+        void onDisconnected(String endpointId);
+    }
+}
@@ -0,0 +1,278 @@
+package com.nirma.attendance;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Talks to the attendance server's {@code /api/mark} endpoint. Requests run on a small
+ * bounded pool, reuse keep-alive connections (bodies are always drained and closed),
+ * have hard connect/read timeouts, and retry transport errors and 5xx replies with
+ * jittered exponential backoff. Callbacks arrive on {@code callbackExecutor} and never
+ * after the call has been cancelled.
+ */
+public class VerificationClient {
+
+    public interface Callback {
+        /** Server answered with a line containing "success". */
+        void onVerified(String message);
+        /** Server answered, but refused (duplicate, proxy, unknown student...). */
+        void onRejected(String message);
+        /** Server couldn't be reached after all retries. */
+        void onError(Exception error);
+    }
+
+    private final String baseUrl;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int maxAttempts;
+    private final Backoff backoff;
+    private final ThreadPoolExecutor executor;
+    private final Executor callbackExecutor;
+
+    private VerificationClient(Builder builder) {
+        this.baseUrl = builder.baseUrl.endsWith("/")
+                ? builder.baseUrl.substring(0, builder.baseUrl.length() - 1) : builder.baseUrl;
+        this.connectTimeoutMillis = builder.connectTimeoutMillis;
+        this.readTimeoutMillis = builder.readTimeoutMillis;
+        this.maxAttempts = builder.maxAttempts;
+        this.backoff = new Backoff(builder.backoffBaseMillis, builder.backoffMaxMillis, new Random());
+        this.callbackExecutor = builder.callbackExecutor;
+        this.executor = new ThreadPoolExecutor(builder.threads, builder.threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(builder.queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "verification");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Asks the server to mark {@code uid} from {@code devId}. */
+    public Call verify(String uid, String devId, Callback callback) {
+        Call call = new Call();
+        String path;
+        try {
+            path = baseUrl + "/api/mark?uid=" + URLEncoder.encode(uid, "UTF-8")
+                    + "&devId=" + URLEncoder.encode(devId, "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // UTF-8 is always there
+        }
+        try {
+            call.future = executor.submit(() -> run(call, path, callback));
+        } catch (RejectedExecutionException e) {
+            callbackExecutor.execute(() -> callback.onError(e));
+        }
+        return call;
+    }
+
+    /** Cancels everything queued or in flight. The client can't be used afterwards. */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Call call, String path, Callback callback) {
+        Response response;
+        try {
+            response = send(call, path, null);
+        } catch (IOException e) {
+            deliver(call, () -> callback.onError(e));
+            return;
+        }
+        if (response == null) return; // cancelled
+        String message = response.firstLine();
+        boolean verified = response.code < 300 && message.toLowerCase(Locale.ROOT).contains("success");
+        deliver(call, () -> {
+            if (verified) {
+                callback.onVerified(message);
+            } else {
+                callback.onRejected(message.isEmpty() ? "HTTP " + response.code : message);
+            }
+        });
+    }
+
+    /**
+     * Verifies many check-ins in one request, for when the professor's phone verifies on
+     * behalf of the class. POSTs one {@code uid\tdevId} line per check-in to
+     * {@code /api/mark/batch} and returns the server's verdict lines in the same order.
+     * Blocking, with the same timeouts and retries as {@link #verify}; call it off the main thread.
+     */
+    public List<String> markBatch(List<CheckIn> batch) throws IOException {
+        StringBuilder body = new StringBuilder(batch.size() * 32);
+        for (CheckIn checkIn : batch) {
+            body.append(checkIn.rollNo).append('\t').append(CheckIn.deviceKey(checkIn.deviceHash)).append('\n');
+        }
+        Response response = send(new Call(), baseUrl + "/api/mark/batch", body.toString().getBytes(StandardCharsets.UTF_8));
+        if (response == null) {
+            throw new InterruptedIOException("Batch verification cancelled");
+        }
+        if (response.code >= 300) {
+            throw new IOException("HTTP " + response.code + " " + response.firstLine());
+        }
+        if (response.lines.size() < batch.size()) {
+            throw new IOException("Expected " + batch.size() + " verdicts, got " + response.lines.size());
+        }
+        return response.lines.subList(0, batch.size());
+    }
+
+    /** Sends with retries. Returns null if the call was cancelled, throws once retries run out. */
+    private Response send(Call call, String path, byte[] body) throws IOException {
+        IOException lastError = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (call.cancelled) return null;
+            if (attempt > 0) {
+                try {
+                    Thread.sleep(backoff.delayMillis(attempt - 1));
+                } catch (InterruptedException e) {
+                    return null; // cancelled
+                }
+                if (call.cancelled) return null;
+            }
+            try {
+                Response response = exchange(call, path, body);
+                if (response.code >= 500 || response.code == 429) {
+                    lastError = new IOException("HTTP " + response.code);
+                    continue;
+                }
+                return response;
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+        if (call.cancelled) return null;
+        throw lastError;
+    }
+
+    private Response exchange(Call call, String path, byte[] body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(path).openConnection();
+        call.connection = conn;
+        try {
+            conn.setRequestMethod(body == null ? "GET" : "POST");
+            conn.setConnectTimeout(connectTimeoutMillis);
+            conn.setReadTimeout(readTimeoutMillis);
+            conn.setUseCaches(false);
+            conn.setRequestProperty("Connection", "keep-alive");
+            if (body != null) {
+                conn.setDoOutput(true);
+                conn.setFixedLengthStreamingMode(body.length);
+                conn.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+
+            int code = conn.getResponseCode();
+            InputStream stream = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            List<String> lines = new ArrayList<>();
+            if (stream != null) {
+                // Read to the end and close (not disconnect) so the socket goes back to the pool
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lines.add(line.trim());
+                    }
+                }
+            }
+            return new Response(code, lines);
+        } finally {
+            call.connection = null;
+        }
+    }
+
+    private void deliver(Call call, Runnable result) {
+        if (call.cancelled) return;
+        callbackExecutor.execute(() -> {
+            if (!call.cancelled) result.run();
+        });
+    }
+
+    private static final class Response {
+        final int code;
+        final List<String> lines;
+
+        Response(int code, List<String> lines) {
+            this.code = code;
+            this.lines = lines;
+        }
+
+        String firstLine() {
+            return lines.isEmpty() ? "" : lines.get(0);
+        }
+    }
+
+    /** Handle for one verification. Cancelling aborts the socket and suppresses the callback. */
+    public static final class Call {
+        private volatile boolean cancelled;
+        private volatile Future<?> future;
+        private volatile HttpURLConnection connection;
+
+        public void cancel() {
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null) f.cancel(true);
+            HttpURLConnection conn = connection;
+            if (conn != null) conn.disconnect();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    public static final class Builder {
+        private final String baseUrl;
+        private final Executor callbackExecutor;
+        private int connectTimeoutMillis = 3_000;
+        private int readTimeoutMillis = 5_000;
+        private int maxAttempts = 4;
+        private long backoffBaseMillis = 500;
+        private long backoffMaxMillis = 4_000;
+        private int threads = 2;
+        private int queueSize = 4;
+
+        /** {@code baseUrl} is scheme, host and port, e.g. "http://192.168.1.8:8080". */
+        public Builder(String baseUrl, Executor callbackExecutor) {
+            this.baseUrl = baseUrl;
+            this.callbackExecutor = callbackExecutor;
+        }
+
+        public Builder setTimeouts(int connectMillis, int readMillis) {
+            this.connectTimeoutMillis = connectMillis;
+            this.readTimeoutMillis = readMillis;
+            return this;
+        }
+
+        public Builder setRetries(int maxAttempts, long backoffBaseMillis, long backoffMaxMillis) {
+            this.maxAttempts = Math.max(1, maxAttempts);
+            this.backoffBaseMillis = backoffBaseMillis;
+            this.backoffMaxMillis = backoffMaxMillis;
+            return this;
+        }
+
+        public Builder setPool(int threads, int queueSize) {
+            this.threads = threads;
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        public VerificationClient build() {
+            return new VerificationClient(this);
+        }
+    }
+}
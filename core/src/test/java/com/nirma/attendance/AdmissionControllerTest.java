@@ -0,0 +1,117 @@
+package com.nirma.attendance;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControllerTest {
+
+    private final List<String> calls = new ArrayList<>();
+    private final AdmissionController controller = new AdmissionController(new AdmissionController.Hub() {
+        @Override
+        public void accept(String endpointId) {
+            calls.add("accept " + endpointId);
+        }
+
+        @Override
+        public void reject(String endpointId) {
+            calls.add("reject " + endpointId);
+        }
+
+        @Override
+        public void disconnect(String endpointId) {
+            calls.add("disconnect " + endpointId);
+        }
+    }, 2, 10_000, 5_000, 1_000);
+
+    @Test
+    public void acceptsUpToLimitThenQueues() {
+        controller.onConnectionInitiated("a", 0);
+        controller.onConnectionInitiated("b", 0);
+        controller.onConnectionInitiated("c", 0);
+        assertEquals(2, controller.activeCount());
+        assertEquals(1, controller.queuedCount());
+        assertEquals(Arrays.asList("accept a", "accept b"), calls);
+    }
+
+    @Test
+    public void deliveredReplyDisconnectsAndAdmitsNextInOrder() {
+        controller.onConnectionInitiated("a", 0);
+        controller.onConnectionInitiated("b", 0);
+        controller.onConnectionInitiated("c", 0);
+        controller.onConnectionInitiated("d", 0);
+        calls.clear();
+
+        controller.onReplySent("a", 42L, 100);
+        controller.onPayloadDelivered("a", 41L); // not the reply
+        assertTrue(calls.isEmpty());
+        controller.onPayloadDelivered("a", 42L);
+        assertEquals(Arrays.asList("disconnect a", "accept c"), calls);
+        assertEquals(2, controller.activeCount());
+        assertEquals(1, controller.queuedCount());
+    }
+
+    @Test
+    public void waitersTimeOutWithRejection() {
+        controller.onConnectionInitiated("a", 0);
+        controller.onConnectionInitiated("b", 0);
+        controller.onConnectionInitiated("c", 0);
+        calls.clear();
+        controller.onActivity("a", 9_000);
+        controller.onActivity("b", 9_000);
+        controller.tick(10_000);
+        assertEquals(Arrays.asList("reject c"), calls);
+        assertEquals(1, controller.rejectedCount());
+        assertEquals(0, controller.queuedCount());
+
+        // Totals are per session
+        controller.reset();
+        assertEquals(0, controller.rejectedCount());
+        assertEquals(0, controller.activeCount());
+    }
+
+    @Test
+    public void idleAndUnackedEndpointsAreReclaimed() {
+        controller.onConnectionInitiated("a", 0);
+        controller.onConnectionInitiated("b", 0);
+        controller.onConnectionInitiated("c", 0);
+        controller.onReplySent("b", 7L, 3_000);
+        calls.clear();
+
+        controller.tick(4_000); // b's reply has sat undelivered for 1 s
+        assertEquals(Arrays.asList("disconnect b", "accept c"), calls);
+        calls.clear();
+
+        controller.tick(5_000); // a has been silent for 5 s
+        assertEquals(Arrays.asList("disconnect a"), calls);
+        assertEquals(2, controller.timedOutCount());
+        assertEquals(1, controller.activeCount());
+    }
+
+    @Test
+    public void remoteDisconnectFreesSlot() {
+        controller.onConnectionInitiated("a", 0);
+        controller.onConnectionInitiated("b", 0);
+        controller.onConnectionInitiated("c", 0);
+        controller.onDisconnected("c"); // gave up while waiting
+        controller.onDisconnected("a");
+        assertEquals(1, controller.activeCount());
+        assertEquals(0, controller.queuedCount());
+        controller.onConnectionFailed("b");
+        assertEquals(0, controller.activeCount());
+    }
+
+    @Test
+    public void meterCountsLastMinute() {
+        ThroughputMeter meter = new ThroughputMeter();
+        for (int i = 0; i < 30; i++) meter.record(1_000L * i);
+        assertEquals(30, meter.perMinute(29_999));
+        assertEquals(15, meter.perMinute(74_999));
+        assertEquals(0, meter.perMinute(200_000));
+        assertEquals(30, meter.total());
+    }
+}
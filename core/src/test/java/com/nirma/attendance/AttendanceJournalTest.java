@@ -0,0 +1,215 @@
+package com.nirma.attendance;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class AttendanceJournalTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void replaysWhatWasAppended() throws Exception {
+        File file = new File(temp.getRoot(), "session.journal");
+        try (AttendanceJournal journal = AttendanceJournal.open(file)) {
+            journal.append(new CheckIn("21BCE045", 11L, 12L, 13L));
+            journal.append(new CheckIn("21BCE046", -1L, Long.MAX_VALUE, 14L));
+        }
+
+        List<CheckIn> replayed = new ArrayList<>();
+        assertEquals(2, AttendanceJournal.replay(file, replayed::add));
+        assertEquals("21BCE045", replayed.get(0).rollNo);
+        assertEquals(11L, replayed.get(0).deviceHash);
+        assertEquals(12L, replayed.get(0).nonce);
+        assertEquals(13L, replayed.get(0).timestampMillis);
+        assertEquals(-1L, replayed.get(1).deviceHash);
+        assertEquals(Long.MAX_VALUE, replayed.get(1).nonce);
+    }
+
+    @Test
+    public void reopenAppendsAfterExistingRecords() throws Exception {
+        File file = new File(temp.getRoot(), "session.journal");
+        try (AttendanceJournal journal = AttendanceJournal.open(file)) {
+            journal.append(new CheckIn("A", 1L, 1L, 1L));
+        }
+        try (AttendanceJournal journal = AttendanceJournal.open(file)) {
+            assertEquals(1, journal.durableCount());
+            journal.append(new CheckIn("B", 2L, 2L, 2L));
+        }
+        List<CheckIn> replayed = new ArrayList<>();
+        AttendanceJournal.replay(file, replayed::add);
+        assertEquals(2, replayed.size());
+        assertEquals("B", replayed.get(1).rollNo);
+    }
+
+    @Test
+    public void concurrentAppendersWaitForTheirOwnRecord() throws Exception {
+        File file = new File(temp.getRoot(), "session.journal");
+        try (AttendanceJournal journal = AttendanceJournal.open(file)) {
+            journal.append(new CheckIn("A", 1L, 1L, 1L));
+        }
+        try (AttendanceJournal journal = AttendanceJournal.open(file)) {
+            Thread[] threads = new Thread[8];
+            boolean[] durable = new boolean[threads.length * 50];
+            for (int t = 0; t < threads.length; t++) {
+                int base = t * 50;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        long sequence = journal.append(new CheckIn("R" + (base + i), base + i, 0L, 0L));
+                        try {
+                            // Sequence numbers continue after the record found on open
+                            durable[(int) sequence - 2] = journal.awaitDurable(sequence, 5_000)
+                                    && journal.durableCount() >= sequence;
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) thread.join();
+            for (boolean ok : durable) assertTrue(ok);
+            assertEquals(401, journal.durableCount());
+        }
+        assertEquals(401, AttendanceJournal.replay(file, checkIn -> {}));
+    }
+
+    @Test
+    public void tornTailIsDroppedAndOverwritten() throws Exception {
+        File file = new File(temp.getRoot(), "session.journal");
+        try (AttendanceJournal journal = AttendanceJournal.open(file)) {
+            journal.append(new CheckIn("A", 1L, 1L, 1L));
+            journal.append(new CheckIn("B", 2L, 2L, 2L));
+        }
+        // Crash halfway through writing the second record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 7);
+        }
+        assertEquals(1, AttendanceJournal.replay(file, checkIn -> {}));
+
+        try (AttendanceJournal journal = AttendanceJournal.open(file)) {
+            journal.append(new CheckIn("C", 3L, 3L, 3L));
+        }
+        List<CheckIn> replayed = new ArrayList<>();
+        AttendanceJournal.replay(file, replayed::add);
+        assertEquals(2, replayed.size());
+        assertEquals("C", replayed.get(1).rollNo);
+    }
+
+    @Test
+    public void corruptRecordStopsReplay() throws Exception {
+        File file = new File(temp.getRoot(), "session.journal");
+        try (AttendanceJournal journal = AttendanceJournal.open(file)) {
+            journal.append(new CheckIn("A", 1L, 1L, 1L));
+            journal.append(new CheckIn("B", 2L, 2L, 2L));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 6);
+            raf.write(0x55);
+        }
+        assertEquals(1, AttendanceJournal.replay(file, checkIn -> {}));
+    }
+
+    @Test
+    public void closeAsyncFinishesOnTheWriterEvenAfterARename() throws Exception {
+        File file = new File(temp.getRoot(), "live.journal");
+        AttendanceJournal journal = AttendanceJournal.open(file);
+        for (int i = 0; i < 100; i++) journal.append(new CheckIn("R" + i, i, i, i));
+        journal.closeAsync();
+        assertEquals(100, journal.appendedCount());
+
+        // As when a finished session is archived while its last group is still syncing
+        File archived = new File(temp.getRoot(), "Attendance_1.journal");
+        assertTrue(file.renameTo(archived));
+        assertTrue(journal.awaitClosed(5_000));
+        assertEquals(100, journal.durableCount());
+        assertEquals(100, AttendanceJournal.replay(archived, checkIn -> {}));
+    }
+
+    @Test
+    public void failedWriteStopsTheJournalAndCutsBackToTheLastSync() throws Exception {
+        File file = new File(temp.getRoot(), "session.journal");
+        AtomicBoolean diskFull = new AtomicBoolean();
+        AtomicReference<IOException> reported = new AtomicReference<>();
+        CountDownLatch heard = new CountDownLatch(1);
+        AttendanceJournal journal = AttendanceJournal.open(file, out -> new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (diskFull.get()) {
+                    out.write(b, off, len / 2); // part of the group lands, then the disk gives out
+                    throw new IOException("No space left on device");
+                }
+                out.write(b, off, len);
+            }
+        });
+        journal.setListener(error -> {
+            reported.set(error);
+            heard.countDown();
+        });
+        long first = journal.append(new CheckIn("A", 1L, 1L, 1L));
+        assertTrue(journal.awaitDurable(first, 5_000));
+        long length = file.length();
+
+        diskFull.set(true);
+        long lost = journal.append(new CheckIn("B", 2L, 2L, 2L));
+        assertFalse(journal.awaitDurable(lost, 5_000));
+        assertNotNull(journal.failure());
+        assertTrue(heard.await(5, TimeUnit.SECONDS)); // told on the writer thread, maybe after the waiters
+        assertSame(journal.failure(), reported.get());
+        assertEquals(length, file.length());
+
+        // Waiters for later records hear at once instead of timing out one by one
+        diskFull.set(false);
+        long start = System.nanoTime();
+        assertFalse(journal.awaitDurable(journal.append(new CheckIn("C", 3L, 3L, 3L)), 5_000));
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertEquals(1, journal.durableCount());
+        journal.closeAsync();
+        assertTrue(journal.awaitClosed(5_000));
+        assertEquals(length, file.length());
+        assertEquals(1, AttendanceJournal.replay(file, checkIn -> {}));
+    }
+
+    @Test
+    public void missingFileReplaysNothing() throws Exception {
+        assertEquals(0, AttendanceJournal.replay(new File(temp.getRoot(), "nope"), checkIn -> fail()));
+    }
+
+    @Test
+    public void recoveryOf500EntrySession() throws Exception {
+        File file = new File(temp.getRoot(), "session.journal");
+        try (AttendanceJournal journal = AttendanceJournal.open(file)) {
+            for (int i = 0; i < 500; i++) {
+                journal.append(new CheckIn(String.format(Locale.US, "21BCE%03d", i), i, i, i));
+            }
+        }
+
+        // Warm-up, then time a cold-start style rebuild into a fresh roster
+        AttendanceJournal.replay(file, checkIn -> {});
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            Roster roster = new Roster();
+            long start = System.nanoTime();
+            AttendanceJournal.replay(file, roster::add);
+            best = Math.min(best, System.nanoTime() - start);
+            assertEquals(500, roster.size());
+        }
+        assertTrue(String.format(Locale.US, "recovered 500 check-ins (%d bytes) in %.2f ms", file.length(), best / 1e6),
+                best < 200_000_000L);
+    }
+}
@@ -0,0 +1,116 @@
+package com.nirma.attendance;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BatchVerifierTest {
+
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private BatchVerifier verifier;
+
+    @After
+    public void tearDown() {
+        if (verifier != null) verifier.shutdown();
+    }
+
+    @Test
+    public void fullBatchGoesOutWithoutWaiting() throws Exception {
+        CountDownLatch verdicts = new CountDownLatch(10);
+        verifier = new BatchVerifier(this::acceptAll, 10, 60_000,
+                Executors.newSingleThreadScheduledExecutor(), Runnable::run,
+                (endpoint, checkIn, accepted, message) -> verdicts.countDown());
+        for (int i = 0; i < 10; i++) verifier.submit("e" + i, checkIn(i));
+        assertTrue(verdicts.await(2, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(10), batchSizes);
+    }
+
+    @Test
+    public void partialBatchGoesOutAfterDelay() throws Exception {
+        CountDownLatch verdicts = new CountDownLatch(3);
+        verifier = new BatchVerifier(this::acceptAll, 50, 100,
+                Executors.newSingleThreadScheduledExecutor(), Runnable::run,
+                (endpoint, checkIn, accepted, message) -> verdicts.countDown());
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) verifier.submit("e" + i, checkIn(i));
+        assertTrue(verdicts.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+        assertEquals(Collections.singletonList(3), batchSizes);
+    }
+
+    @Test
+    public void burstIsSplitIntoBoundedBatches() throws Exception {
+        CountDownLatch verdicts = new CountDownLatch(250);
+        verifier = new BatchVerifier(this::acceptAll, 50, 20,
+                Executors.newSingleThreadScheduledExecutor(), Runnable::run,
+                (endpoint, checkIn, accepted, message) -> verdicts.countDown());
+        for (int i = 0; i < 250; i++) verifier.submit("e" + i, checkIn(i));
+        assertTrue(verdicts.await(5, TimeUnit.SECONDS));
+        int total = 0;
+        for (int size : batchSizes) {
+            assertTrue(size <= 50);
+            total += size;
+        }
+        assertEquals(250, total);
+        assertTrue(batchSizes.size() <= 10);
+    }
+
+    @Test
+    public void verdictsMatchTheirCheckIns() throws Exception {
+        CountDownLatch verdicts = new CountDownLatch(4);
+        AtomicInteger mismatches = new AtomicInteger();
+        verifier = new BatchVerifier(batch -> {
+            List<String> lines = new ArrayList<>();
+            for (CheckIn checkIn : batch) {
+                lines.add(checkIn.nonce % 2 == 0 ? "Success " + checkIn.rollNo : "Error: proxy " + checkIn.rollNo);
+            }
+            return lines;
+        }, 4, 1_000, Executors.newSingleThreadScheduledExecutor(), Runnable::run,
+                (endpoint, checkIn, accepted, message) -> {
+                    if (!endpoint.equals("e" + checkIn.nonce) || accepted != (checkIn.nonce % 2 == 0)
+                            || !message.endsWith(checkIn.rollNo)) {
+                        mismatches.incrementAndGet();
+                    }
+                    verdicts.countDown();
+                });
+        for (int i = 0; i < 4; i++) verifier.submit("e" + i, checkIn(i));
+        assertTrue(verdicts.await(2, TimeUnit.SECONDS));
+        assertEquals(0, mismatches.get());
+    }
+
+    @Test
+    public void unreachableServerRejectsWholeBatch() throws Exception {
+        CountDownLatch verdicts = new CountDownLatch(2);
+        AtomicInteger accepted = new AtomicInteger();
+        verifier = new BatchVerifier(batch -> {
+            throw new IOException("down");
+        }, 2, 1_000, Executors.newSingleThreadScheduledExecutor(), Runnable::run,
+                (endpoint, checkIn, ok, message) -> {
+                    if (ok) accepted.incrementAndGet();
+                    verdicts.countDown();
+                });
+        verifier.submit("a", checkIn(0));
+        verifier.submit("b", checkIn(1));
+        assertTrue(verdicts.await(2, TimeUnit.SECONDS));
+        assertEquals(0, accepted.get());
+    }
+
+    private List<String> acceptAll(List<CheckIn> batch) {
+        batchSizes.add(batch.size());
+        return Collections.nCopies(batch.size(), "success");
+    }
+
+    private static CheckIn checkIn(int i) {
+        return new CheckIn("R" + i, i, i, 0L);
+    }
+}
@@ -0,0 +1,153 @@
+package com.nirma.attendance;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CheckInCodecTest {
+
+    @Test
+    public void roundTrip() {
+        long deviceHash = CheckInCodec.hashDeviceId("9774d56d682e549c");
+        byte[] data = CheckInCodec.encode("21BCE045", deviceHash, 1_700_000_000_000L, -5L);
+
+        CheckInCodec.Frame frame = new CheckInCodec.Frame();
+        assertTrue(frame.wrap(data));
+        assertEquals("21BCE045", frame.rollNo());
+        assertEquals(deviceHash, frame.deviceHash());
+        assertEquals(1_700_000_000_000L, frame.clientTime());
+        assertEquals(-5L, frame.nonce());
+        assertEquals(0, frame.flags());
+    }
+
+    @Test
+    public void flagsAndReplyRoundTrip() {
+        CheckInCodec.Frame frame = new CheckInCodec.Frame();
+        assertTrue(frame.wrap(CheckInCodec.encode("21BCE045", 1L, 2L, 3L, CheckInCodec.FLAG_FRAMED_REPLY)));
+        assertEquals(CheckInCodec.FLAG_FRAMED_REPLY, frame.flags());
+
+        CheckInCodec.Reply ack = CheckInCodec.decodeReply(
+                CheckInCodec.encodeReply(CheckInCodec.Reply.ALREADY_MARKED, -3L, 1_700_000_000_000L, null));
+        assertEquals(CheckInCodec.Reply.ALREADY_MARKED, ack.status);
+        assertEquals(-3L, ack.checkInId);
+        assertEquals(1_700_000_000_000L, ack.serverTime);
+        assertEquals("", ack.message);
+        assertTrue(ack.isMarked());
+
+        CheckInCodec.Reply refusal = CheckInCodec.decodeReply(
+                CheckInCodec.encodeReply(CheckInCodec.Reply.REFUSED, 3L, 0L, "Error: proxy"));
+        assertFalse(refusal.isMarked());
+        assertEquals("Error: proxy", refusal.message);
+
+        assertNull(CheckInCodec.decodeReply("SUCCESS".getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        assertNull(CheckInCodec.decodeReply(CheckInCodec.encode("21BCE045", 1L, 2L, 3L)));
+    }
+
+    @Test
+    public void roundTripNonAsciiAndMaxLength() {
+        CheckInCodec.Frame frame = new CheckInCodec.Frame();
+        assertTrue(frame.wrap(CheckInCodec.encode("\u091b\u093e\u0924\u094d\u0930-7", 1L, 2L, 3L)));
+        assertEquals("\u091b\u093e\u0924\u094d\u0930-7", frame.rollNo());
+
+        String longest = "12345678901234567890123456789012";
+        assertTrue(frame.wrap(CheckInCodec.encode(longest, Long.MIN_VALUE, Long.MAX_VALUE, 0L)));
+        assertEquals(longest, frame.rollNo());
+        assertEquals(Long.MIN_VALUE, frame.deviceHash());
+        assertEquals(Long.MAX_VALUE, frame.clientTime());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encodeRejectsOversizedRoll() {
+        CheckInCodec.encode("123456789012345678901234567890123", 0L, 0L, 0L);
+    }
+
+    @Test
+    public void deviceHashIsStable() {
+        assertEquals(CheckInCodec.hashDeviceId("abc"), CheckInCodec.hashDeviceId("abc"));
+        assertNotEquals(CheckInCodec.hashDeviceId("abc"), CheckInCodec.hashDeviceId("abd"));
+    }
+
+    @Test
+    public void rejectsTruncatedAndPaddedFrames() {
+        byte[] data = CheckInCodec.encode("21BCE045", 1L, 2L, 3L);
+        CheckInCodec.Frame frame = new CheckInCodec.Frame();
+        for (int length = 0; length < data.length; length++) {
+            byte[] cut = new byte[length];
+            System.arraycopy(data, 0, cut, 0, length);
+            assertFalse("length " + length, frame.wrap(cut));
+        }
+        byte[] padded = new byte[data.length + 1];
+        System.arraycopy(data, 0, padded, 0, data.length);
+        assertFalse(frame.wrap(padded));
+        assertFalse(frame.wrap(null));
+    }
+
+    @Test
+    public void rejectsUnknownFlags() {
+        CheckInCodec.Frame frame = new CheckInCodec.Frame();
+        byte[] data = CheckInCodec.encode("21BCE045", 1L, 2L, 3L, CheckInCodec.FLAG_FRAMED_REPLY);
+        assertTrue(frame.wrap(data));
+        for (int bit = 1; bit < 8; bit++) {
+            byte[] reserved = data.clone();
+            reserved[3] |= (byte) (1 << bit);
+            assertFalse("bit " + bit, frame.wrap(reserved));
+        }
+        byte[] newer = data.clone();
+        newer[3] |= 0x02;
+        assertNull("the hub must not ACK what it can't fully read", new CheckInIngest().decode(newer, 0L));
+        try {
+            CheckInCodec.encode("21BCE045", 1L, 2L, 3L, 0x80);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // encode never produces what wrap would refuse
+        }
+    }
+
+    @Test
+    public void fuzzRandomBytesNeverThrow() {
+        Random random = new Random(1234);
+        CheckInCodec.Frame frame = new CheckInCodec.Frame();
+        for (int i = 0; i < 100_000; i++) {
+            byte[] junk = new byte[random.nextInt(80)];
+            random.nextBytes(junk);
+            if (random.nextBoolean() && junk.length > 4) {
+                // Give half the inputs a valid header so the length checks get exercised too
+                junk[0] = CheckInCodec.MAGIC_0;
+                junk[1] = CheckInCodec.MAGIC_1;
+                junk[2] = CheckInCodec.VERSION;
+            }
+            if (frame.wrap(junk)) {
+                assertEquals(junk.length, CheckInCodec.HEADER_BYTES + (junk[4] & 0xff) + CheckInCodec.TRAILER_BYTES);
+                assertNotNull(frame.rollNo());
+                frame.deviceHash();
+                frame.clientTime();
+                frame.nonce();
+            }
+        }
+    }
+
+    @Test
+    public void fuzzMutatedFramesNeverThrow() {
+        Random random = new Random(42);
+        CheckInCodec.Frame frame = new CheckInCodec.Frame();
+        byte[] valid = CheckInCodec.encode("21BCE045", 11L, 22L, 33L);
+        for (int i = 0; i < 100_000; i++) {
+            byte[] mutated = valid.clone();
+            int flips = 1 + random.nextInt(3);
+            for (int f = 0; f < flips; f++) {
+                mutated[random.nextInt(mutated.length)] ^= (byte) (1 << random.nextInt(8));
+            }
+            if (frame.wrap(mutated)) {
+                assertEquals(8, (mutated[4] & 0xff));
+                frame.rollNo();
+                frame.nonce();
+            }
+        }
+    }
+
+    private static void assertNotEquals(long a, long b) {
+        assertFalse(a == b);
+    }
+}
@@ -0,0 +1,90 @@
+package com.nirma.attendance;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class CheckInIngestTest {
+
+    private static final int CHECK_INS = 20_000;
+
+    @Test
+    public void decodesRollAndDevice() {
+        byte[] data = CheckInCodec.encode("21BCE045", 7L, 100L, 9L);
+        CheckIn checkIn = new CheckInIngest().decode(data, 42L);
+        assertEquals("21BCE045", checkIn.rollNo);
+        assertEquals(7L, checkIn.deviceHash);
+        assertEquals(9L, checkIn.nonce);
+        assertEquals(42L, checkIn.timestampMillis);
+    }
+
+    @Test
+    public void rejectsLegacyTextPayload() {
+        byte[] data = "21BCE045\n(Device: abc123)".getBytes(StandardCharsets.UTF_8);
+        assertNull(new CheckInIngest().decode(data, 1L));
+    }
+
+    @Test
+    public void allocatesLessThanStringPipeline() {
+        com.sun.management.ThreadMXBean threads = threadBean();
+        Assume.assumeTrue(threads != null && threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        byte[][] payloads = new byte[CHECK_INS][];
+        for (int i = 0; i < CHECK_INS; i++) {
+            payloads[i] = CheckInCodec.encode(String.format(Locale.US, "21BCE%04d", i), i, i, i);
+        }
+
+        // Warm both paths up so we compare steady state, not class loading
+        CheckInIngest ingest = new CheckInIngest();
+        legacyIngest(payloads, new ArrayList<>());
+        ingest(ingest, payloads, new Roster());
+
+        long tid = Thread.currentThread().getId();
+        List<String> legacyList = new ArrayList<>(CHECK_INS);
+        long before = threads.getThreadAllocatedBytes(tid);
+        legacyIngest(payloads, legacyList);
+        long legacyBytes = threads.getThreadAllocatedBytes(tid) - before;
+
+        Roster roster = new Roster();
+        before = threads.getThreadAllocatedBytes(tid);
+        ingest(ingest, payloads, roster);
+        long newBytes = threads.getThreadAllocatedBytes(tid) - before;
+
+        assertEquals(CHECK_INS, roster.size());
+        assertTrue(String.format(Locale.US, "per check-in: legacy %d B, ingest %d B",
+                legacyBytes / CHECK_INS, newBytes / CHECK_INS), newBytes * 2 < legacyBytes);
+    }
+
+    // What onPayloadReceived used to do for every arrival
+    private static void legacyIngest(byte[][] payloads, List<String> out) {
+        for (byte[] payload : payloads) {
+            String data = new String(payload, StandardCharsets.UTF_8);
+            String time = new SimpleDateFormat("hh:mm:ss a", Locale.getDefault()).format(new Date());
+            out.add(data + " @ " + time);
+            byte[] ack = "SUCCESS".getBytes(StandardCharsets.UTF_8);
+            if (ack.length == 0) fail();
+        }
+    }
+
+    private static void ingest(CheckInIngest ingest, byte[][] payloads, Roster roster) {
+        long now = System.currentTimeMillis();
+        for (byte[] payload : payloads) {
+            roster.add(ingest.decode(payload, now));
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+}
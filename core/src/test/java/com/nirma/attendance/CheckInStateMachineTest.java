@@ -0,0 +1,180 @@
+package com.nirma.attendance;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CheckInStateMachineTest {
+
+    private static final class Task {
+        final long due;
+        final long order;
+        final Runnable runnable;
+
+        Task(long due, long order, Runnable runnable) {
+            this.due = due;
+            this.order = order;
+            this.runnable = runnable;
+        }
+    }
+
+    // A virtual clock, the way a Handler would see it
+    private long now;
+    private long order;
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>(
+            Comparator.<Task>comparingLong(t -> t.due).thenComparingLong(t -> t.order));
+
+    private int scans;
+    private int radioStops;
+    private String lastMessage;
+    private final SessionTelemetry telemetry = new SessionTelemetry();
+    private CheckInStateMachine machine;
+
+    @Before
+    public void setUp() {
+        CheckInStateMachine.Actions actions = new CheckInStateMachine.Actions() {
+            @Override
+            public void startDiscovery() {
+                scans++;
+            }
+
+            @Override
+            public void stopRadio() {
+                radioStops++;
+            }
+
+            @Override
+            public void onStateChanged(CheckInStateMachine.State state, String message) {
+                lastMessage = message;
+            }
+        };
+        machine = new CheckInStateMachine(actions, (delay, task) -> tasks.add(new Task(now + delay, order++, task)),
+                () -> now, telemetry, new Backoff(1_000, 8_000, new Random(1)), 3, 30_000, 10_000, 15_000);
+    }
+
+    private void advance(long millis) {
+        long until = now + millis;
+        while (!tasks.isEmpty() && tasks.peek().due <= until) {
+            Task task = tasks.poll();
+            now = task.due;
+            task.runnable.run();
+        }
+        now = until;
+    }
+
+    @Test
+    public void markedStopsTheRadioAndReportsRadioTime() {
+        assertTrue(machine.start());
+        advance(2_000);
+        machine.onEndpointFound();
+        advance(500);
+        machine.onConnected();
+        advance(700);
+        machine.onMarked();
+
+        assertEquals(CheckInStateMachine.State.MARKED, machine.state());
+        assertEquals(1, scans);
+        assertEquals(1, radioStops);
+        assertEquals(3_200, machine.radioOnMillis());
+        assertTrue(lastMessage, lastMessage.contains("radio on 3.2s"));
+        assertEquals(1, telemetry.histogram("student.radio_on").count());
+
+        // Pending deadlines must not fire into a finished check-in
+        advance(60_000);
+        assertEquals(CheckInStateMachine.State.MARKED, machine.state());
+        assertEquals(1, radioStops);
+    }
+
+    @Test
+    public void repeatedTapsAreIgnored() {
+        assertTrue(machine.start());
+        assertFalse(machine.start());
+        machine.onEndpointFound();
+        assertFalse(machine.start());
+        assertEquals(1, scans);
+        assertEquals(2, telemetry.count("student.ignored_taps"));
+
+        machine.onConnected();
+        machine.onMarked();
+        assertTrue(machine.start()); // e.g. the next lecture
+        assertEquals(2, scans);
+    }
+
+    @Test
+    public void discoveryGivesUpAtTheDeadline() {
+        machine.start();
+        advance(29_999);
+        assertEquals(CheckInStateMachine.State.DISCOVERING, machine.state());
+        advance(1);
+        assertEquals(CheckInStateMachine.State.FAILED, machine.state());
+        assertEquals(1, radioStops);
+        assertEquals(30_000, machine.radioOnMillis());
+
+        // Tapping again starts over
+        assertTrue(machine.start());
+        assertEquals(2, scans);
+        assertEquals(0, machine.radioOnMillis());
+    }
+
+    @Test
+    public void lostLinksReconnectWithBackoffThenGiveUp() {
+        machine.start();
+        machine.onEndpointFound();
+        machine.onLinkLost("Disconnected");
+        assertEquals(CheckInStateMachine.State.BACKING_OFF, machine.state());
+        assertEquals(1, radioStops);
+
+        advance(1_000); // the first backoff is at most the base delay
+        assertEquals(CheckInStateMachine.State.DISCOVERING, machine.state());
+        assertEquals(2, scans);
+
+        machine.onEndpointFound();
+        advance(10_000); // connect deadline
+        assertEquals(CheckInStateMachine.State.BACKING_OFF, machine.state());
+        advance(2_000);
+        assertEquals(3, scans);
+
+        machine.onEndpointFound();
+        machine.onConnected();
+        machine.onLinkLost("Disconnected");
+        assertEquals(CheckInStateMachine.State.FAILED, machine.state()); // 3 attempts used
+        assertEquals(3, scans);
+        assertEquals(2, telemetry.count("student.reconnects"));
+        assertEquals(1, telemetry.count("student.gave_up"));
+
+        advance(60_000);
+        assertEquals(3, scans);
+    }
+
+    @Test
+    public void refusalIsFinalAndLateEventsAreIgnored() {
+        machine.start();
+        machine.onEndpointFound();
+        machine.onConnected();
+        machine.onRefused("Error: already marked from this device");
+        assertEquals(CheckInStateMachine.State.REFUSED, machine.state());
+
+        machine.onLinkLost("Disconnected"); // the professor hangs up after refusing
+        machine.onMarked();
+        advance(60_000);
+        assertEquals(CheckInStateMachine.State.REFUSED, machine.state());
+        assertEquals(1, scans);
+        assertEquals(1, radioStops);
+    }
+
+    @Test
+    public void cancelStopsEverything() {
+        machine.start();
+        machine.onEndpointFound();
+        machine.onLinkLost("Disconnected");
+        machine.cancel();
+        advance(60_000);
+        assertEquals(CheckInStateMachine.State.IDLE, machine.state());
+        assertEquals(1, scans);
+    }
+}
@@ -0,0 +1,127 @@
+package com.nirma.attendance;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EnrolmentIndexTest {
+
+    @Test
+    public void headerPicksRollAndNameColumns() throws IOException {
+        EnrolmentIndex index = parse("\uFEFFSr,Name,Roll No\n1,\"Shah, Aarav\",21BCE001\n2,Priya,21BCE002\n");
+        assertEquals(2, index.size());
+        assertEquals("21BCE001", index.rollAt(0));
+        assertEquals("Shah, Aarav", index.nameAt(0));
+        assertEquals(1, index.slotOf("21BCE002"));
+    }
+
+    @Test
+    public void noHeaderMeansFirstColumn() throws IOException {
+        EnrolmentIndex index = parse("21BCE001\r\n21BCE002,extra\r\n\r\n 21bce001 \r\n");
+        // Blank lines and duplicates are dropped
+        assertEquals(Arrays.asList("21BCE001", "21BCE002"), index.absentees());
+        assertEquals("", index.nameAt(0));
+    }
+
+    @Test
+    public void lookupIgnoresCaseAndSpaces() {
+        EnrolmentIndex index = EnrolmentIndex.of(Arrays.asList("21BCE001"));
+        assertTrue(index.isEnrolled(" 21bce001"));
+        assertFalse(index.isEnrolled("21BCE002"));
+        assertFalse(index.isEnrolled(null));
+    }
+
+    @Test
+    public void presenceCountsAndAbsentees() {
+        EnrolmentIndex index = EnrolmentIndex.of(Arrays.asList("A", "B", "C", "D"));
+        assertTrue(index.markPresent("B"));
+        assertFalse(index.markPresent("b")); // already present
+        assertFalse(index.markPresent("Z")); // not enrolled
+        assertTrue(index.markPresent("D"));
+        assertEquals(2, index.presentCount());
+        assertEquals(2, index.absentCount());
+        assertEquals(Arrays.asList("A", "C"), index.absentees());
+
+        index.markAbsent("D");
+        assertEquals(Arrays.asList("A", "C", "D"), index.absentees());
+        index.clearPresence();
+        assertEquals(0, index.presentCount());
+        assertEquals(4, index.absentees().size());
+    }
+
+    @Test
+    public void largeClassStaysConsistent() {
+        ArrayList<String> rolls = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) rolls.add(String.format(Locale.US, "21BCE%04d", i));
+        EnrolmentIndex index = EnrolmentIndex.of(rolls);
+        Random random = new Random(3);
+        int marked = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (index.markPresent(rolls.get(random.nextInt(rolls.size())))) marked++;
+        }
+        assertEquals(marked, index.presentCount());
+        int[] absent = index.absentSlots();
+        assertEquals(5_000 - marked, absent.length);
+        for (int slot : absent) assertFalse(index.isPresent(index.rollAt(slot)));
+    }
+
+    @Test
+    public void hubRefusesRollsNotOnTheList() {
+        InMemoryTransport transport = new InMemoryTransport(new Random(1), 10, 10, 0, 0);
+        Roster roster = new Roster();
+        AttendanceHub hub = new AttendanceHub(transport, new AttendanceHub.Listener() {
+            @Override
+            public void onAdmitted(CheckIn checkIn) {}
+
+            @Override
+            public void onAccepted(CheckIn checkIn) {
+                roster.add(checkIn);
+            }
+
+            @Override
+            public void onRefused(CheckIn checkIn, String message) {}
+        }, transport::now, new SessionTelemetry(), 10, 20_000, 15_000, 5_000);
+        transport.setListener(hub);
+        EnrolmentIndex index = EnrolmentIndex.of(Arrays.asList("21BCE001", "21BCE002", "21BCE003"));
+        hub.setEnrolment(index);
+        hub.restore(new CheckIn("21BCE003", 7L, 0L, 0L));
+
+        ArrayList<String> replies = new ArrayList<>();
+        long device = 1;
+        for (String roll : new String[]{"21BCE001", "22XYZ999"}) {
+            long deviceHash = device++;
+            String[] id = new String[1];
+            id[0] = transport.requestConnection("Student".getBytes(StandardCharsets.UTF_8), new InMemoryTransport.Student() {
+                @Override
+                public void onConnectionResult(boolean connected) {
+                    transport.sendFromStudent(id[0], CheckInCodec.encode(roll, deviceHash, 0L, 1L));
+                }
+
+                @Override
+                public void onPayload(byte[] bytes) {
+                    replies.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public void onDisconnected() {}
+            });
+        }
+        transport.run(() -> replies.size() == 2, 60_000);
+        assertTrue(replies.contains("SUCCESS"));
+        assertTrue(replies.contains(AttendanceHub.NOT_ENROLLED));
+        assertEquals(1, roster.size());
+        assertEquals(Arrays.asList("21BCE002"), index.absentees());
+    }
+
+    private static EnrolmentIndex parse(String csv) throws IOException {
+        return EnrolmentIndex.parseCsv(new StringReader(csv));
+    }
+}
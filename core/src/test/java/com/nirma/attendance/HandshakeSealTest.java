@@ -0,0 +1,49 @@
+package com.nirma.attendance;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HandshakeSealTest {
+
+    private static final SessionDescriptor SESSION = new SessionDescriptor("2CS701", 42, 1234, 2_000_000_000L, 0);
+
+    @Test
+    public void professorReadsSealedCheckIn() {
+        byte[] frame = CheckInCodec.encode("21BCE045", 0xabcdefL, 1_700_000_000_000L, 99L);
+        byte[] sealed = new HandshakeSeal(SESSION).seal(frame);
+
+        HandshakeSeal professor = new HandshakeSeal(SESSION);
+        int length = professor.open(sealed);
+        assertEquals(frame.length, length);
+        CheckIn checkIn = new CheckInIngest().decode(sealed, length, 5L);
+        assertNotNull(checkIn);
+        assertEquals("21BCE045", checkIn.rollNo);
+        assertEquals(0xabcdefL, checkIn.deviceHash);
+        assertEquals(99L, checkIn.nonce);
+    }
+
+    @Test
+    public void otherAdvertIsRefused() {
+        byte[] frame = CheckInCodec.encode("21BCE045", 1L, 2L, 3L);
+        byte[] sealed = new HandshakeSeal(SESSION).seal(frame);
+        // Same course and session, but the professor restarted advertising with a new nonce
+        SessionDescriptor restarted = new SessionDescriptor("2CS701", 42, 1235, 2_000_000_000L, 0);
+        assertEquals(-1, new HandshakeSeal(restarted).open(sealed));
+    }
+
+    @Test
+    public void tamperedRollIsRefused() {
+        byte[] sealed = new HandshakeSeal(SESSION).seal(CheckInCodec.encode("21BCE045", 1L, 2L, 3L));
+        sealed[CheckInCodec.HEADER_BYTES] = '3';
+        assertEquals(-1, new HandshakeSeal(SESSION).open(sealed));
+    }
+
+    @Test
+    public void plainNamesAreNotCheckIns() {
+        HandshakeSeal seal = new HandshakeSeal(SESSION);
+        assertEquals(-1, seal.open("Student".getBytes()));
+        assertEquals(-1, seal.open(new byte[0]));
+        assertEquals(-1, seal.open(null));
+    }
+}
@@ -0,0 +1,234 @@
+package com.nirma.attendance;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LoadSimulatorTest {
+
+    @Test
+    public void wholeClassChecksInOverACleanRadio() {
+        LoadSimulator.Result result = new LoadSimulator.Builder().setStudents(300).build().run();
+        assertEquals(result.toString(), 300, result.marked);
+        assertEquals(300, result.rosterSize);
+        assertEquals(300, result.attempts);
+    }
+
+    @Test
+    public void retriesRideOutLossAndDroppedLinks() {
+        LoadSimulator.Result result = new LoadSimulator.Builder().setStudents(300)
+                .setLossRate(0.1).setDisconnectRate(0.05).setSeed(7).build().run();
+        assertEquals(result.toString(), 0, result.gaveUp);
+        assertEquals(300, result.marked);
+        // A retry after a lost ACK must be answered as a repeat, not a second roster row
+        assertEquals(300, result.rosterSize);
+        assertTrue(result.attempts > 300);
+    }
+
+    @Test
+    public void hubNeverExceedsItsSlots() {
+        LoadSimulator.Result result = new LoadSimulator.Builder().setStudents(300).setArrivalWindow(1_000)
+                .setHubLimits(10, 20_000, 15_000, 5_000).build().run();
+        assertEquals(result.toString(), 300, result.marked);
+        assertTrue(csv(result.telemetry).contains("peak,hub.active_endpoints,10\n"));
+    }
+
+    @Test
+    public void fastModeIsQuickerThanPayloads() {
+        LoadSimulator.Builder base = new LoadSimulator.Builder().setStudents(300).setArrivalWindow(1_000);
+        LoadSimulator.Result payload = base.setFastMode(false).build().run();
+        LoadSimulator.Result fast = base.setFastMode(true).build().run();
+        assertEquals(300, fast.marked);
+        assertTrue(fast + " vs " + payload, fast.durationMillis < payload.durationMillis);
+    }
+
+    @Test
+    public void sameSeedSameRun() {
+        LoadSimulator.Builder builder = new LoadSimulator.Builder().setLossRate(0.1).setSeed(42);
+        assertEquals(builder.build().run().toString(), builder.build().run().toString());
+    }
+
+    @Test
+    public void hubRefusesProxyOverInMemoryTransport() {
+        InMemoryTransport transport = new InMemoryTransport(new Random(1), 10, 10, 0, 0);
+        Roster roster = new Roster();
+        AttendanceHub hub = new AttendanceHub(transport, new AttendanceHub.Listener() {
+            @Override
+            public void onAdmitted(CheckIn checkIn) {}
+
+            @Override
+            public void onAccepted(CheckIn checkIn) {
+                roster.add(checkIn);
+            }
+
+            @Override
+            public void onRefused(CheckIn checkIn, String message) {}
+        }, transport::now, new SessionTelemetry(), 10, 20_000, 15_000, 5_000);
+        transport.setListener(hub);
+
+        ArrayList<String> replies = new ArrayList<>();
+        for (String roll : new String[]{"21BCE001", "21BCE002"}) {
+            String[] id = new String[1];
+            id[0] = transport.requestConnection("Student".getBytes(StandardCharsets.UTF_8), new InMemoryTransport.Student() {
+                @Override
+                public void onConnectionResult(boolean connected) {
+                    // Same phone for both rolls
+                    transport.sendFromStudent(id[0], CheckInCodec.encode(roll, 99L, 0L, 1L));
+                }
+
+                @Override
+                public void onPayload(byte[] bytes) {
+                    replies.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public void onDisconnected() {}
+            });
+        }
+        transport.run(() -> replies.size() == 2, 60_000);
+        assertEquals("SUCCESS", replies.get(0));
+        assertEquals(ProxyGuard.describe(ProxyGuard.Verdict.DEVICE_REUSED), replies.get(1));
+        assertEquals(1, roster.size());
+    }
+
+    @Test
+    public void resendIsAnsweredWithTheOriginalRecord() {
+        InMemoryTransport transport = new InMemoryTransport(new Random(1), 10, 10, 0, 0);
+        Roster roster = new Roster();
+        AttendanceHub hub = hub(transport, roster);
+        byte[] checkIn = CheckInCodec.encode("21BCE001", 99L, 0L, 42L, CheckInCodec.FLAG_FRAMED_REPLY);
+
+        // Two links, as after a lost ACK: the second sends the same check-in twice
+        ArrayList<CheckInCodec.Reply> replies = new ArrayList<>();
+        connectAndSend(transport, checkIn, 1, replies);
+        transport.run(() -> replies.size() == 1, 60_000);
+        connectAndSend(transport, checkIn, 2, replies);
+        transport.run(() -> replies.size() == 3, 60_000);
+
+        assertEquals(CheckInCodec.Reply.MARKED, replies.get(0).status);
+        for (CheckInCodec.Reply reply : replies) {
+            assertEquals(42L, reply.checkInId);
+            assertEquals(roster.get(0).timestampMillis, reply.serverTime);
+        }
+        assertEquals(CheckInCodec.Reply.ALREADY_MARKED, replies.get(1).status);
+        assertEquals(CheckInCodec.Reply.ALREADY_MARKED, replies.get(2).status);
+        assertEquals(1, roster.size());
+    }
+
+    @Test
+    public void resendWaitsForTheServerVerdict() {
+        InMemoryTransport transport = new InMemoryTransport(new Random(1), 10, 10, 0, 0);
+        Roster roster = new Roster();
+        AttendanceHub hub = hub(transport, roster);
+        ArrayList<CheckIn> submitted = new ArrayList<>();
+        ArrayList<String> endpoints = new ArrayList<>();
+        // Holds on to what it's given; the test hands down the verdict
+        hub.setBatchVerifier(new BatchVerifier(batch -> null, 1, 0, null, Runnable::run,
+                (endpointId, c, accepted, message) -> {}) {
+            @Override
+            public void submit(String endpointId, CheckIn c) {
+                endpoints.add(endpointId);
+                submitted.add(c);
+            }
+        });
+        byte[] checkIn = CheckInCodec.encode("21BCE001", 99L, 0L, 42L, CheckInCodec.FLAG_FRAMED_REPLY);
+        ArrayList<CheckInCodec.Reply> replies = new ArrayList<>();
+        connectAndSend(transport, checkIn, 1, replies);
+        transport.run(() -> submitted.size() == 1, 60_000);
+        connectAndSend(transport, checkIn, 1, replies);
+        transport.run(() -> false, 1_000);
+        assertTrue("no ACK before the server has answered", replies.isEmpty());
+
+        hub.onVerdict(endpoints.get(0), submitted.get(0), true, "success");
+        transport.run(() -> replies.size() == 2, 60_000);
+        assertEquals(1, submitted.size());
+        assertEquals(1, roster.size());
+        assertEquals(CheckInCodec.Reply.MARKED, replies.get(0).status);
+        assertEquals(CheckInCodec.Reply.ALREADY_MARKED, replies.get(1).status);
+    }
+
+    @Test
+    public void stoppingWithAVerdictOutstandingLetsTheRetryIn() {
+        InMemoryTransport transport = new InMemoryTransport(new Random(1), 10, 10, 0, 0);
+        Roster roster = new Roster();
+        AttendanceHub hub = hub(transport, roster);
+        ArrayList<CheckIn> submitted = new ArrayList<>();
+        ArrayList<String> endpoints = new ArrayList<>();
+        hub.setBatchVerifier(new BatchVerifier(batch -> null, 1, 0, null, Runnable::run,
+                (endpointId, c, accepted, message) -> {}) {
+            @Override
+            public void submit(String endpointId, CheckIn c) {
+                endpoints.add(endpointId);
+                submitted.add(c);
+            }
+        });
+        byte[] checkIn = CheckInCodec.encode("21BCE001", 99L, 0L, 42L, CheckInCodec.FLAG_FRAMED_REPLY);
+        ArrayList<CheckInCodec.Reply> replies = new ArrayList<>();
+        connectAndSend(transport, checkIn, 1, replies);
+        transport.run(() -> submitted.size() == 1, 60_000);
+
+        // The professor stops; the verifier goes down with the check-in still queued
+        hub.setBatchVerifier(null);
+        hub.reset();
+        connectAndSend(transport, checkIn, 1, replies);
+        transport.run(() -> replies.size() == 1, 60_000);
+        assertEquals(CheckInCodec.Reply.MARKED, replies.get(0).status);
+        assertEquals(1, roster.size());
+
+        // A batch that was in flight answers late; the retry's record stands alone
+        hub.onVerdict(endpoints.get(0), submitted.get(0), true, "success");
+        transport.run(() -> false, 1_000);
+        assertEquals(1, roster.size());
+        assertEquals(1, replies.size());
+    }
+
+    private static AttendanceHub hub(InMemoryTransport transport, Roster roster) {
+        AttendanceHub hub = new AttendanceHub(transport, new AttendanceHub.Listener() {
+            @Override
+            public void onAdmitted(CheckIn checkIn) {}
+
+            @Override
+            public void onAccepted(CheckIn checkIn) {
+                roster.add(checkIn);
+            }
+
+            @Override
+            public void onRefused(CheckIn checkIn, String message) {}
+        }, transport::now, new SessionTelemetry(), 10, 20_000, 15_000, 5_000);
+        transport.setListener(hub);
+        return hub;
+    }
+
+    private static void connectAndSend(InMemoryTransport transport, byte[] checkIn, int times,
+                                       ArrayList<CheckInCodec.Reply> replies) {
+        String[] id = new String[1];
+        id[0] = transport.requestConnection("Student".getBytes(StandardCharsets.UTF_8), new InMemoryTransport.Student() {
+            @Override
+            public void onConnectionResult(boolean connected) {
+                for (int i = 0; i < times; i++) transport.sendFromStudent(id[0], checkIn);
+            }
+
+            @Override
+            public void onPayload(byte[] bytes) {
+                replies.add(CheckInCodec.decodeReply(bytes));
+            }
+
+            @Override
+            public void onDisconnected() {}
+        });
+    }
+
+    private static String csv(SessionTelemetry telemetry) {
+        StringBuilder out = new StringBuilder();
+        try {
+            telemetry.writeCsv(out);
+        } catch (java.io.IOException e) {
+            throw new AssertionError(e);
+        }
+        return out.toString();
+    }
+}
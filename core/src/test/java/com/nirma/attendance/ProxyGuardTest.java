@@ -0,0 +1,87 @@
+package com.nirma.attendance;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class ProxyGuardTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final ProxyGuard guard = new ProxyGuard();
+
+    @Test
+    public void firstCheckInIsAccepted() {
+        assertEquals(ProxyGuard.Verdict.ACCEPT, guard.admit(new CheckIn("A", 1L, 10L, 0L)));
+        assertEquals(ProxyGuard.Verdict.ACCEPT, guard.admit(new CheckIn("B", 2L, 11L, 0L)));
+    }
+
+    @Test
+    public void sameStudentSamePhoneIsRepeat() {
+        guard.admit(new CheckIn("A", 1L, 10L, 0L));
+        assertEquals(ProxyGuard.Verdict.REPEAT, guard.admit(new CheckIn("A", 1L, 12L, 5L)));
+    }
+
+    @Test
+    public void secondRollFromSamePhoneIsRejected() {
+        guard.admit(new CheckIn("A", 1L, 10L, 0L));
+        assertEquals(ProxyGuard.Verdict.DEVICE_REUSED, guard.admit(new CheckIn("B", 1L, 11L, 0L)));
+    }
+
+    @Test
+    public void rollFromAnotherPhoneIsRejected() {
+        guard.admit(new CheckIn("A", 1L, 10L, 0L));
+        assertEquals(ProxyGuard.Verdict.ROLL_TAKEN, guard.admit(new CheckIn("A", 2L, 11L, 0L)));
+    }
+
+    @Test
+    public void releaseFreesRollAndDevice() {
+        CheckIn first = new CheckIn("A", 1L, 10L, 0L);
+        guard.admit(first);
+        guard.release(first);
+        assertEquals(ProxyGuard.Verdict.ACCEPT, guard.admit(new CheckIn("B", 1L, 11L, 0L)));
+        assertEquals(ProxyGuard.Verdict.ACCEPT, guard.admit(new CheckIn("A", 2L, 12L, 0L)));
+    }
+
+    @Test
+    public void historyFlagsPhoneUsedForOtherRoll() {
+        DeviceHistory history = new DeviceHistory();
+        history.remember(1L, "A");
+        assertFalse(history.isSuspect(1L, "A"));
+        assertTrue(history.isSuspect(1L, "B"));
+        assertFalse(history.isSuspect(2L, "B"));
+    }
+
+    @Test
+    public void historySurvivesSaveAndLoad() throws Exception {
+        DeviceHistory history = new DeviceHistory();
+        for (int i = 0; i < 1_000; i++) history.remember(i, "R" + i);
+        assertTrue(history.isDirty());
+        File file = new File(temp.getRoot(), "history.bloom");
+        history.save(file);
+        assertFalse(history.isDirty());
+
+        DeviceHistory loaded = DeviceHistory.load(file);
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(loaded.isSuspect(i, "R" + i));
+        }
+        assertTrue(loaded.isSuspect(5L, "R6"));
+    }
+
+    @Test
+    public void historyFalsePositiveRateIsLow() {
+        DeviceHistory history = new DeviceHistory();
+        for (int i = 0; i < 10_000; i++) history.remember(i, "R" + i);
+        int flagged = 0;
+        for (int i = 0; i < 10_000; i++) {
+            // Phones never seen before should almost never be flagged
+            if (history.isSuspect(1_000_000L + i, "X" + i)) flagged++;
+        }
+        assertTrue("false positives: " + flagged, flagged < 100);
+    }
+}
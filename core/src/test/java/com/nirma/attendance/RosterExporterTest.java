@@ -0,0 +1,277 @@
+package com.nirma.attendance;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class RosterExporterTest {
+
+    private final RosterExporter exporter = new RosterExporter(Executors.newSingleThreadExecutor(), Runnable::run);
+
+    @Test
+    public void csvIsUtf8AndQuoted() throws Exception {
+        List<CheckIn> rows = new ArrayList<>();
+        rows.add(new CheckIn("21BCE045", 0x3f9a02c1_00000000L, 1L, 0L));
+        rows.add(new CheckIn("22,\"X\"", 0L, 2L, 0L));
+        rows.add(new CheckIn("élève", 0L, 3L, 0L));
+
+        String csv = new String(export(rows, ExportFormat.CSV), StandardCharsets.UTF_8);
+        String[] lines = csv.split("\n");
+        assertEquals("Roll Number,Device,Timestamp", lines[0]);
+        assertTrue(lines[1].startsWith("21BCE045,3f9a02c1,"));
+        assertTrue(lines[2].startsWith("\"22,\"\"X\"\"\",00000000,"));
+        assertTrue(lines[3].startsWith("élève,"));
+    }
+
+    @Test
+    public void csvCellsNeverRunAsFormulas() throws Exception {
+        List<CheckIn> rows = new ArrayList<>();
+        rows.add(new CheckIn("=HYPERLINK(\"http://x\",\"a\")", 0L, 1L, 0L));
+        rows.add(new CheckIn("+1", 0L, 2L, 0L));
+        rows.add(new CheckIn("@SUM(A1)", 0L, 3L, 0L));
+        rows.add(new CheckIn("-2", 0L, 4L, 0L));
+        rows.add(new CheckIn("\tX", 0L, 5L, 0L));
+
+        String csv = new String(export(rows, ExportFormat.CSV), StandardCharsets.UTF_8);
+        String[] lines = csv.split("\n");
+        assertTrue(lines[1], lines[1].startsWith("\"'=HYPERLINK(\"\"http://x\"\",\"\"a\"\")\","));
+        assertTrue(lines[2].startsWith("'+1,"));
+        assertTrue(lines[3].startsWith("'@SUM(A1),"));
+        assertTrue(lines[4].startsWith("'-2,"));
+        assertTrue(lines[5].startsWith("'\tX,"));
+
+        // The semester report reads exported files back with the original roll numbers
+        List<String> read = new ArrayList<>();
+        SemesterAggregator.readCsv(new BufferedReader(new StringReader(csv)), read::add);
+        for (int i = 0; i < rows.size(); i++) assertEquals(rows.get(i).rollNo, read.get(i));
+        assertEquals("'plain", ExportFormat.restoreFormula("'plain"));
+    }
+
+    @Test
+    public void jsonLinesOneObjectPerRecord() throws Exception {
+        List<CheckIn> rows = new ArrayList<>();
+        rows.add(new CheckIn("21\"BCE", 0L, 1L, 1_700_000_000_000L));
+        String jsonl = new String(export(rows, ExportFormat.JSON_LINES), StandardCharsets.UTF_8);
+        assertEquals("{\"rollNo\":\"21\\\"BCE\",\"device\":\"00000000\",\"timestamp\":1700000000000,"
+                + "\"time\":\"2023-11-14T22:13:20.000Z\"}\n", jsonl);
+    }
+
+    @Test
+    public void xlsxHasWorkbookParts() throws Exception {
+        List<CheckIn> rows = new ArrayList<>();
+        rows.add(new CheckIn("A<B", 0L, 1L, 0L));
+        byte[] xlsx = export(rows, ExportFormat.XLSX);
+
+        Set<String> names = new HashSet<>();
+        String sheet = null;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(xlsx))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+                if (entry.getName().equals("xl/worksheets/sheet1.xml")) {
+                    sheet = new String(readAll(zip), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        assertTrue(names.contains("[Content_Types].xml"));
+        assertTrue(names.contains("xl/workbook.xml"));
+        assertNotNull(sheet);
+        assertTrue(sheet.contains("<t>A&lt;B</t>"));
+        assertTrue(sheet.endsWith("</sheetData></worksheet>"));
+    }
+
+    @Test
+    public void cancelStopsAndClosesStream() throws Exception {
+        List<CheckIn> rows = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) rows.add(new CheckIn("R" + i, i, i, i));
+
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicInteger cancelledAt = new AtomicInteger(-1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<RosterExporter.Task> task = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(1);
+
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) {}
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                started.countDown();
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        task.set(exporter.export(rows, ExportFormat.CSV, () -> sink, new Listener(done) {
+            @Override
+            public void onProgress(int written, int total) {
+                task.get().cancel();
+            }
+
+            @Override
+            public void onCancelled(int written) {
+                cancelledAt.set(written);
+                super.onCancelled(written);
+            }
+        }));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(closed.get());
+        assertTrue(cancelledAt.get() >= 0 && cancelledAt.get() < rows.size());
+    }
+
+    @Test
+    public void recreatedScreenTakesOverARunningExport() throws Exception {
+        List<CheckIn> rows = new ArrayList<>();
+        for (int i = 0; i < 10 * RosterExporter.PROGRESS_STEP; i++) rows.add(new CheckIn("R" + i, i, i, i));
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch rotated = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CountDownLatch oldDone = new CountDownLatch(1);
+        RosterExporter.Task task = exporter.export(rows, ExportFormat.CSV, () -> {
+            opened.countDown();
+            assertTrue(rotated.await(10, TimeUnit.SECONDS)); // still writing while the screen goes
+            return out;
+        }, new Listener(oldDone));
+
+        // As in onDestroy on a rotation: the old screen lets go, the export carries on
+        assertTrue(opened.await(10, TimeUnit.SECONDS));
+        task.setListener(null);
+        rotated.countDown();
+        assertTrue(awaitDone(task));
+        assertEquals(1, oldDone.getCount());
+
+        // The new screen attaches after the export ended and still hears how
+        AtomicInteger written = new AtomicInteger(-1);
+        CountDownLatch newDone = new CountDownLatch(1);
+        task.setListener(new Listener(newDone) {
+            @Override
+            public void onFinished(int count) {
+                written.set(count);
+                super.onFinished(count);
+            }
+        });
+        assertTrue(newDone.await(10, TimeUnit.SECONDS));
+        assertEquals(rows.size(), written.get());
+        assertEquals(rows.size() + 1, new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n").length);
+
+        // Once only
+        CountDownLatch again = new CountDownLatch(1);
+        task.setListener(new Listener(again));
+        assertEquals(1, again.getCount());
+    }
+
+    @Test
+    public void failureStillClosesStream() throws Exception {
+        List<CheckIn> rows = new ArrayList<>();
+        rows.add(new CheckIn("21BCE045", 0L, 1L, 0L));
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        exporter.export(rows, ExportFormat.CSV, () -> broken, new Listener(done) {
+            @Override
+            public void onFailed(Exception error) {
+                failure.set(error);
+                super.onFailed(error);
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNotNull(failure.get());
+        assertTrue(closed.get());
+    }
+
+    private byte[] export(List<CheckIn> rows, ExportFormat format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger written = new AtomicInteger(-1);
+        exporter.export(rows, format, () -> out, new Listener(done) {
+            @Override
+            public void onFinished(int count) {
+                written.set(count);
+                super.onFinished(count);
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(rows.size(), written.get());
+        return out.toByteArray();
+    }
+
+    private static boolean awaitDone(RosterExporter.Task task) throws InterruptedException {
+        // With Runnable::run the outcome is handed over on the worker, before the task is done
+        for (int i = 0; i < 1_000 && !task.isDone(); i++) Thread.sleep(10);
+        return task.isDone();
+    }
+
+    private static byte[] readAll(ZipInputStream zip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = zip.read(buffer)) > 0) out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+
+    private static class Listener implements RosterExporter.Listener {
+        private final CountDownLatch done;
+
+        Listener(CountDownLatch done) {
+            this.done = done;
+        }
+
+        @Override
+        public void onProgress(int written, int total) {}
+
+        @Override
+        public void onFinished(int written) {
+            done.countDown();
+        }
+
+        @Override
+        public void onCancelled(int written) {
+            done.countDown();
+        }
+
+        @Override
+        public void onFailed(Exception error) {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.nirma.attendance;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RosterSyncTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    /** Stands in for Firestore: one document per roll number per session. */
+    private static final class InMemoryBackend implements RosterSync.Backend {
+        final HashMap<String, HashMap<String, CheckIn>> sessions = new HashMap<>();
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean offline;
+        volatile int quotaFailures;
+        volatile CountDownLatch gate;
+
+        @Override
+        public void write(String sessionKey, List<CheckIn> batch) throws IOException {
+            CountDownLatch wait = gate;
+            if (wait != null) {
+                try {
+                    wait.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (offline) throw new IOException("offline");
+            if (quotaFailures > 0) {
+                quotaFailures--;
+                throw new RosterSync.QuotaExceededException("RESOURCE_EXHAUSTED", null);
+            }
+            synchronized (this) {
+                HashMap<String, CheckIn> docs = sessions.computeIfAbsent(sessionKey, k -> new HashMap<>());
+                for (CheckIn checkIn : batch) docs.put(checkIn.rollNo, checkIn);
+            }
+            batchSizes.add(batch.size());
+        }
+
+        synchronized int documents(String sessionKey) {
+            HashMap<String, CheckIn> docs = sessions.get(sessionKey);
+            return docs == null ? 0 : docs.size();
+        }
+    }
+
+    private final InMemoryBackend backend = new InMemoryBackend();
+    private final SessionTelemetry telemetry = new SessionTelemetry();
+    private final ArrayList<RosterSync> syncs = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (RosterSync sync : syncs) sync.shutdown();
+    }
+
+    private RosterSync sync(File checkpoint, long lingerMillis) {
+        RosterSync sync = new RosterSync(backend, checkpoint, RosterSync.MAX_BATCH, lingerMillis,
+                new Backoff(10, 50, new Random(1)), new Backoff(100, 200, new Random(1)),
+                Executors.newSingleThreadScheduledExecutor(), telemetry);
+        syncs.add(sync);
+        return sync;
+    }
+
+    private static List<CheckIn> checkIns(int from, int to) {
+        ArrayList<CheckIn> list = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            list.add(new CheckIn(String.format(Locale.US, "21BCE%04d", i), i, i, 1_000L + i));
+        }
+        return list;
+    }
+
+    private static void awaitSynced(RosterSync sync, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sync.syncedCount() < count) {
+            if (System.nanoTime() > deadline) fail("synced " + sync.syncedCount() + " of " + count);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void burstIsCoalescedIntoFirestoreSizedBatches() throws Exception {
+        RosterSync sync = sync(temp.newFile("live.journal.sync"), 200);
+        sync.start("CS101_1", Collections.emptyList());
+        for (CheckIn checkIn : checkIns(0, 1_200)) sync.offer(checkIn);
+        awaitSynced(sync, 1_200);
+
+        assertEquals(1_200, backend.documents("CS101_1"));
+        assertEquals(0, sync.pendingCount());
+        for (int size : backend.batchSizes) assertTrue(size <= RosterSync.MAX_BATCH);
+        assertTrue(backend.batchSizes.toString(), backend.batchSizes.size() <= 4); // 1,200 / 500, rounded up
+    }
+
+    @Test
+    public void offlineCheckInsResumeFromTheCheckpoint() throws Exception {
+        File checkpoint = new File(temp.getRoot(), "live.journal.sync");
+        List<CheckIn> journal = checkIns(0, 300);
+
+        RosterSync first = sync(checkpoint, 0);
+        first.start("CS101_1", journal.subList(0, 100));
+        awaitSynced(first, 100);
+        backend.offline = true;
+        for (CheckIn checkIn : journal.subList(100, 300)) first.offer(checkIn);
+        Thread.sleep(100);
+        assertEquals(200, first.pendingCount());
+        assertTrue(telemetry.count("sync.failed_writes") > 0);
+        first.shutdown(); // e.g. the process was killed
+
+        // Back online after a restart: the journal replays, the checkpoint says where to go on
+        backend.offline = false;
+        int writesBefore = backend.batchSizes.size();
+        RosterSync second = sync(checkpoint, 0);
+        second.start("CS101_2", journal);
+        assertEquals("CS101_1", second.sessionKey());
+        awaitSynced(second, 300);
+        assertEquals(300, backend.documents("CS101_1"));
+        int rewritten = 0;
+        for (int i = writesBefore; i < backend.batchSizes.size(); i++) rewritten += backend.batchSizes.get(i);
+        assertEquals(200, rewritten);
+    }
+
+    @Test
+    public void quotaErrorsAreRetried() throws Exception {
+        backend.quotaFailures = 2;
+        RosterSync sync = sync(temp.newFile("live.journal.sync"), 0);
+        sync.start("CS101_1", checkIns(0, 10));
+        awaitSynced(sync, 10);
+        assertEquals(2, telemetry.count("sync.quota_exceeded"));
+        assertEquals(10, backend.documents("CS101_1"));
+    }
+
+    @Test
+    public void offerNeverWaitsForTheStore() throws Exception {
+        backend.gate = new CountDownLatch(1);
+        RosterSync sync = sync(temp.newFile("live.journal.sync"), 0);
+        sync.start("CS101_1", Collections.emptyList());
+        long start = System.nanoTime();
+        for (CheckIn checkIn : checkIns(0, 500)) sync.offer(checkIn);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        assertEquals(0, sync.syncedCount());
+
+        backend.gate.countDown();
+        awaitSynced(sync, 500);
+    }
+}
@@ -0,0 +1,165 @@
+package com.nirma.attendance;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class SemesterAggregatorTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(3);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void packRoundTrips() {
+        for (String roll : new String[]{"21BCE001", "0", "ZZZZZZZZZZZZ", "000000000001", "A"}) {
+            long key = SemesterAggregator.pack(roll);
+            assertTrue(key != 0);
+            assertEquals(roll, SemesterAggregator.unpack(key));
+        }
+        assertTrue(SemesterAggregator.pack("01") != SemesterAggregator.pack("1"));
+        assertEquals(0, SemesterAggregator.pack("21-BCE-001")); // falls back to a string key
+        assertEquals(0, SemesterAggregator.pack("ABCDEFGHIJKLM"));
+    }
+
+    @Test
+    public void countsEachStudentOncePerSession() throws Exception {
+        List<SemesterAggregator.Source> sources = Arrays.asList(
+                csv("s1", "Roll Number,Device,Timestamp\n21BCE001,a,x\n21bce001 ,b,y\n21BCE002,c,z\n"),
+                csv("s2", "21BCE001,a,x\n\"21-BCE-009\",d,w\n"),
+                csv("s3", "Roll Number,Device,Timestamp\n21BCE002,c,z\n\"21-BCE-009\",d,w\n"));
+        SemesterAggregator.Report report = new SemesterAggregator(pool, 2).aggregate(sources, null);
+
+        assertEquals(3, report.sessions);
+        assertEquals(3, report.students());
+        assertEquals(2, report.attended("21BCE001"));
+        assertEquals(2, report.attended("21BCE002"));
+        assertEquals(2, report.attended("21-bce-009"));
+        assertEquals(-1, report.attended("21BCE003"));
+        assertEquals("21-BCE-009", report.rollAt(0)); // sorted
+    }
+
+    @Test
+    public void readsJournalsAlongsideCsv() throws Exception {
+        File file = temp.newFile("Attendance_20260901_0900.journal");
+        assertTrue(file.delete());
+        AttendanceJournal journal = AttendanceJournal.open(file);
+        journal.append(new CheckIn("21BCE001", 1L, 0L, 10L));
+        journal.append(new CheckIn("21BCE003", 3L, 0L, 11L));
+        journal.close();
+
+        SemesterAggregator.Report report = new SemesterAggregator(pool, 2).aggregate(Arrays.asList(
+                SemesterAggregator.journal(file), csv("s2", "21BCE001\n")), null);
+        assertEquals(2, report.sessions);
+        assertEquals(2, report.attended("21BCE001"));
+        assertEquals(1, report.attended("21BCE003"));
+    }
+
+    @Test
+    public void unreadableSessionsAreLeftOut() throws Exception {
+        SemesterAggregator.Source broken = new SemesterAggregator.Source() {
+            @Override
+            public String name() {
+                return "broken.csv";
+            }
+
+            @Override
+            public void read(SemesterAggregator.RollSink sink) throws IOException {
+                sink.onRoll("21BCE001"); // half a session must not count
+                throw new IOException("provider went away");
+            }
+        };
+        SemesterAggregator.Report report = new SemesterAggregator(pool, 1).aggregate(Arrays.asList(
+                csv("ok", "21BCE002\n"), broken), null);
+        assertEquals(1, report.sessions);
+        assertEquals(-1, report.attended("21BCE001"));
+        assertEquals(Arrays.asList("broken.csv"), report.failedSources);
+    }
+
+    @Test
+    public void defaultersIncludeEnrolledStudentsWhoNeverCame() throws Exception {
+        ArrayList<SemesterAggregator.Source> sources = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            sources.add(csv("s" + i, i < 3 ? "A1\nB2\n" : "A1\n"));
+        }
+        EnrolmentIndex classList = EnrolmentIndex.of(Arrays.asList("A1", "B2", "C3"));
+        SemesterAggregator.Report report = new SemesterAggregator(pool, 2).aggregate(sources, classList);
+
+        assertEquals(0, report.attended("C3"));
+        assertEquals(Arrays.asList("C3"), report.defaulters(75));
+        assertEquals(Arrays.asList("B2", "C3"), report.defaulters(80));
+
+        StringWriter out = new StringWriter();
+        report.writeCsv(out, 75);
+        assertEquals("Roll Number,Attended,Sessions,Percent,Below 75%\n"
+                + "A1,4,4,100.0,no\nB2,3,4,75.0,no\nC3,0,4,0.0,yes\n", out.toString());
+    }
+
+    @Test
+    public void parallelMatchesSequential() throws Exception {
+        Random random = new Random(5);
+        ArrayList<SemesterAggregator.Source> sources = new ArrayList<>();
+        for (int s = 0; s < 60; s++) {
+            ArrayList<CheckIn> session = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                if (random.nextInt(100) < 80) {
+                    session.add(new CheckIn(String.format(Locale.US, "21BCE%03d", i), i, 0L, 0L));
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ExportFormat.RecordWriter writer = ExportFormat.CSV.open(bytes)) {
+                for (CheckIn checkIn : session) writer.write(checkIn);
+            }
+            byte[] csv = bytes.toByteArray();
+            sources.add(SemesterAggregator.csv("s" + s, () -> new ByteArrayInputStream(csv)));
+        }
+        SemesterAggregator.Report one = new SemesterAggregator(pool, 1).aggregate(sources, null);
+        SemesterAggregator.Report four = new SemesterAggregator(pool, 4).aggregate(sources, null);
+        assertEquals(60, four.sessions);
+        assertEquals(300, four.students());
+        StringWriter a = new StringWriter();
+        StringWriter b = new StringWriter();
+        one.writeCsv(a, 75);
+        four.writeCsv(b, 75);
+        assertEquals(a.toString(), b.toString());
+    }
+
+    @Test
+    public void longIntMapGrows() {
+        LongIntMap map = new LongIntMap(4);
+        for (long key = 1; key <= 10_000; key++) map.add(key * 7919, (int) key);
+        map.add(7919, 5);
+        assertEquals(10_000, map.size());
+        assertEquals(6, map.get(7919));
+        assertEquals(10_000, map.get(10_000L * 7919));
+        assertEquals(0, map.get(3));
+    }
+
+    private static SemesterAggregator.Source csv(String name, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return SemesterAggregator.csv(name, () -> new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,55 @@
+package com.nirma.attendance;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SessionDescriptorTest {
+
+    @Test
+    public void roundTrip() {
+        SessionDescriptor sent = new SessionDescriptor("2cs701", 12345, -7, 1_900_000_000L,
+                SessionDescriptor.FLAG_HUB_VERIFY);
+        SessionDescriptor got = SessionDescriptor.decode(sent.encode());
+        assertNotNull(got);
+        assertEquals("2CS701", got.courseCode);
+        assertEquals(12345, got.sessionId);
+        assertEquals(-7, got.nonce);
+        assertEquals(1_900_000_000L, got.expiresAtSeconds);
+        assertTrue(got.hasFlag(SessionDescriptor.FLAG_HUB_VERIFY));
+    }
+
+    @Test
+    public void studentMatchesOnlyOwnLiveCourse() {
+        SessionDescriptor session = new SessionDescriptor("2CS701", 1, 2, 1_000L, 0);
+        assertTrue(session.matches(" 2cs 701", 999_000L));
+        assertFalse(session.matches("2CS702", 999_000L));
+        assertFalse("expired", session.matches("2CS701", 1_000_000L));
+    }
+
+    @Test
+    public void foreignEndpointInfoIsIgnored() {
+        assertNull(SessionDescriptor.decode(null));
+        assertNull(SessionDescriptor.decode("Professor".getBytes(StandardCharsets.UTF_8)));
+        Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            byte[] junk = new byte[random.nextInt(40)];
+            random.nextBytes(junk);
+            SessionDescriptor.decode(junk); // must not throw
+        }
+    }
+
+    @Test
+    public void fitsInEndpointInfo() {
+        byte[] info = new SessionDescriptor("ABCDEFGHIJKL", 1, 2, 3L, 0).encode();
+        assertTrue(info.length <= 32);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLongCourse() {
+        new SessionDescriptor("ABCDEFGHIJKLM", 1, 2, 3L, 0).encode();
+    }
+}
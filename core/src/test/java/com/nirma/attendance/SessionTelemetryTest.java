@@ -0,0 +1,73 @@
+package com.nirma.attendance;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class SessionTelemetryTest {
+
+    @Test
+    public void bucketsStayWithinAnEighth() {
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> (23 + random.nextInt(41)); // up to the 2^41 us cap
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertTrue(value + " <= " + upper, value <= upper);
+            assertTrue(value + " within 12.5% of " + upper, upper - value <= Math.max(0, value / 8));
+            if (bucket > 0) assertTrue(value > LatencyHistogram.upperBound(bucket - 1));
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) h.record(i * 1000L); // 1..1000 ms
+        assertEquals(1000, h.count());
+        assertEquals(500_000, h.percentileMicros(50), 500_000 / 8);
+        assertEquals(990_000, h.percentileMicros(99), 990_000 / 8);
+        assertEquals(1_000_000, h.percentileMicros(100));
+        assertEquals(1_000_000, h.maxMicros());
+        assertEquals(500_500, h.meanMicros(), 0.01);
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws Exception {
+        SessionTelemetry telemetry = new SessionTelemetry();
+        int threads = 4, perThread = 50_000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    telemetry.recordMicros("hub.ack", i);
+                    telemetry.increment("hub.accepted");
+                    telemetry.peak("hub.active", i % 10);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        assertEquals(threads * perThread, telemetry.histogram("hub.ack").count());
+        assertEquals(threads * perThread, telemetry.count("hub.accepted"));
+
+        StringBuilder csv = new StringBuilder();
+        telemetry.writeCsv(csv);
+        assertTrue(csv.toString(), csv.toString().contains("counter,hub.accepted,200000\n"));
+        assertTrue(csv.toString(), csv.toString().contains("peak,hub.active,9\n"));
+        assertTrue(csv.toString(), csv.toString().contains("latency,hub.ack,200000,"));
+    }
+
+    @Test
+    public void stageTimerFeedsHistograms() {
+        SessionTelemetry telemetry = new SessionTelemetry();
+        StageTimer timer = new StageTimer(telemetry, "student.");
+        timer.start();
+        timer.mark("found");
+        timer.mark("acked");
+        assertEquals(1, telemetry.histogram("student.found").count());
+        assertEquals(1, telemetry.histogram("student.acked").count());
+    }
+}
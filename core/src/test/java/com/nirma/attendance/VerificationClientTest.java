@@ -0,0 +1,186 @@
+package com.nirma.attendance;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/** Runs the client against a stand-in for the laptop server on localhost. */
+public class VerificationClientTest {
+
+    private HttpServer server;
+    private VerificationClient client;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<>());
+    private volatile Handler handler;
+
+    private interface Handler {
+        void handle(HttpExchange exchange, int hit) throws IOException, InterruptedException;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/mark", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            try {
+                handler.handle(exchange, hits.incrementAndGet());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        client = new VerificationClient.Builder("http://127.0.0.1:" + server.getAddress().getPort(), Runnable::run)
+                .setTimeouts(1_000, 300)
+                .setRetries(3, 10, 40)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void successIsVerified() throws Exception {
+        AtomicReference<String> query = new AtomicReference<>();
+        handler = (exchange, hit) -> {
+            query.set(exchange.getRequestURI().getRawQuery());
+            reply(exchange, 200, "Success: marked 21BCE045\n");
+        };
+        Result result = verify("21BCE045", "a b&c");
+        assertEquals("verified", result.kind);
+        assertEquals("Success: marked 21BCE045", result.message);
+        assertEquals("uid=21BCE045&devId=a+b%26c", query.get());
+    }
+
+    @Test
+    public void refusalIsNotRetried() throws Exception {
+        handler = (exchange, hit) -> reply(exchange, 200, "Error: proxy detected");
+        Result result = verify("21BCE045", "dev");
+        assertEquals("rejected", result.kind);
+        assertEquals("Error: proxy detected", result.message);
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    public void serverErrorsAreRetried() throws Exception {
+        handler = (exchange, hit) -> reply(exchange, hit < 3 ? 503 : 200, hit < 3 ? "busy" : "success");
+        Result result = verify("21BCE045", "dev");
+        assertEquals("verified", result.kind);
+        assertEquals(3, hits.get());
+    }
+
+    @Test
+    public void slowServerTimesOutAndGivesUp() throws Exception {
+        handler = (exchange, hit) -> {
+            Thread.sleep(1_000);
+            reply(exchange, 200, "success");
+        };
+        long start = System.nanoTime();
+        Result result = verify("21BCE045", "dev");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals("error", result.kind);
+        assertEquals(3, hits.get());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 3_000);
+    }
+
+    @Test
+    public void connectionsAreReused() throws Exception {
+        handler = (exchange, hit) -> reply(exchange, 200, "success");
+        for (int i = 0; i < 5; i++) {
+            assertEquals("verified", verify("R" + i, "dev").kind);
+        }
+        assertEquals(5, hits.get());
+        assertEquals("keep-alive should reuse one socket", 1, clientPorts.size());
+    }
+
+    @Test
+    public void cancelledCallNeverCallsBack() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(1);
+        handler = (exchange, hit) -> {
+            arrived.countDown();
+            Thread.sleep(200);
+            reply(exchange, 200, "success");
+        };
+        CountDownLatch called = new CountDownLatch(1);
+        VerificationClient.Call call = client.verify("21BCE045", "dev", new Recorder(new Result(), called));
+        assertTrue(arrived.await(2, TimeUnit.SECONDS));
+        call.cancel();
+        assertFalse(called.await(600, TimeUnit.MILLISECONDS));
+        assertTrue(call.isCancelled());
+    }
+
+    private Result verify(String uid, String devId) throws InterruptedException {
+        Result result = new Result();
+        CountDownLatch done = new CountDownLatch(1);
+        client.verify(uid, devId, new Recorder(result, done));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return result;
+    }
+
+    private static void reply(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class Result {
+        volatile String kind;
+        volatile String message;
+    }
+
+    private static final class Recorder implements VerificationClient.Callback {
+        private final Result result;
+        private final CountDownLatch done;
+
+        Recorder(Result result, CountDownLatch done) {
+            this.result = result;
+            this.done = done;
+        }
+
+        @Override
+        public void onVerified(String message) {
+            result.kind = "verified";
+            result.message = message;
+            done.countDown();
+        }
+
+        @Override
+        public void onRejected(String message) {
+            result.kind = "rejected";
+            result.message = message;
+            done.countDown();
+        }
+
+        @Override
+        public void onError(Exception error) {
+            result.kind = "error";
+            result.message = error.getMessage();
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+// Reference attendance server for the apps' /api/mark contract: ./gradlew :server:run
+// Needs JDK 21 for virtual threads; the rest of the build stays on Java 11.
+plugins {
+    application
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    implementation(project(":core"))
+    testImplementation(libs.junit)
+}
+
+application {
+    mainClass.set("com.nirma.attendance.ServerMain")
+}
+
+// Burst test against an in-process server, or a running one with --url
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Fires a campus-sized burst of /api/mark requests and reports throughput and latency."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.nirma.attendance.ServerLoadTest")
+}
@@ -0,0 +1,282 @@
+package com.nirma.attendance;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * The attendance server the apps verify with, as a JDK {@link HttpServer}:
+ *
+ * <pre>
+ *   GET  /api/mark?uid=&amp;devId=   one line; "success..." marks, anything else refuses
+ *   POST /api/mark/batch          "uid\tdevId" lines in, one verdict line each out, in order
+ *   GET  /api/stats               request counts and latencies as CSV
+ * </pre>
+ *
+ * Each exchange runs on {@code executor} (virtual threads in {@link ServerMain}) and may block.
+ * Marks are settled in a {@link MarkRegistry} and appended to an {@link AttendanceJournal},
+ * whose writer fsyncs whatever has queued up in one go; a request only answers "success"
+ * once the mark's record is on disk, a repeat included. A mark whose record doesn't make it
+ * in time is released, and a release record follows it into the journal, so restarting on
+ * the same journal restores exactly the marks that were answered "success".
+ */
+public final class AttendanceServer implements Closeable {
+
+    // Room for a whole class's connections arriving in the same instant
+    private static final int BACKLOG = 1024;
+    private static final long PERSIST_TIMEOUT_MS = 5_000;
+    private static final int MAX_BATCH = 1_000;
+    static final String SAVE_FAILED = "Error: could not save attendance, try again";
+    // Journal records here always have nonce 0; this one undoes the mark before it
+    static final long RELEASED = -1L;
+
+    private final HttpServer http;
+    private final AttendanceJournal journal;
+    private final MarkRegistry registry = new MarkRegistry(64);
+    private final SessionTelemetry telemetry = new SessionTelemetry();
+
+    private AttendanceServer(InetSocketAddress address, File journalFile, Executor executor) throws IOException {
+        AttendanceJournal.replay(journalFile, checkIn -> {
+            if (checkIn.nonce == RELEASED) {
+                registry.release(checkIn.rollNo, checkIn.deviceHash);
+            } else {
+                registry.mark(checkIn.rollNo, checkIn.deviceHash);
+            }
+        });
+        telemetry.peak("server.restored", registry.size());
+        journal = AttendanceJournal.open(journalFile);
+        journal.setListener(error -> {
+            telemetry.increment("server.journal_errors");
+            // Every mark from here on answers 503; restart once the disk is sorted out
+            System.err.println("Journal failed, no longer accepting marks: " + error);
+        });
+        http = HttpServer.create(address, BACKLOG);
+        http.createContext("/api/mark", this::handleMark);
+        http.createContext("/api/mark/batch", this::handleBatch);
+        http.createContext("/api/stats", this::handleStats);
+        http.setExecutor(executor);
+    }
+
+    /** Restores the marks in {@code journalFile}, then starts listening. Port 0 picks a free port. */
+    public static AttendanceServer start(InetSocketAddress address, File journalFile, Executor executor) throws IOException {
+        AttendanceServer server = new AttendanceServer(address, journalFile, executor);
+        server.http.start();
+        return server;
+    }
+
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    /** Students marked so far, including those restored from the journal. */
+    public int markedCount() {
+        return registry.size();
+    }
+
+    public SessionTelemetry telemetry() {
+        return telemetry;
+    }
+
+    /** Stops accepting, lets in-flight exchanges finish briefly, then syncs and closes the journal. */
+    @Override
+    public void close() throws IOException {
+        http.stop(1);
+        journal.close();
+    }
+
+    // --- MARKING ---
+    private static final class Verdict {
+        final int status;
+        final String line;
+        final String rollNo;
+        final long deviceHash;
+        final long sequence; // journal record to wait for, or 0
+        final boolean accepted; // this request made the mark, rather than repeating it
+
+        Verdict(int status, String line) {
+            this(status, line, null, 0L, 0L, false);
+        }
+
+        Verdict(int status, String line, String rollNo, long deviceHash, long sequence, boolean accepted) {
+            this.status = status;
+            this.line = line;
+            this.rollNo = rollNo;
+            this.deviceHash = deviceHash;
+            this.sequence = sequence;
+            this.accepted = accepted;
+        }
+    }
+
+    /** Settles one mark in the registry; a "success" still waits for {@link #persist}. */
+    private Verdict settle(String uid, String devId) {
+        if (uid == null || devId == null || devId.isEmpty() || !CheckInCodec.isValidRollNo(uid.trim())) {
+            telemetry.increment("server.bad_request");
+            return new Verdict(400, "Error: uid and devId are required");
+        }
+        String rollNo = uid.trim();
+        long deviceHash = deviceHash(devId.trim());
+        MarkRegistry.Claim claim = registry.claim(rollNo, deviceHash,
+                () -> journal.append(new CheckIn(rollNo, deviceHash, 0L, System.currentTimeMillis())));
+        telemetry.increment("server.verdict." + claim.verdict.name().toLowerCase(Locale.ROOT));
+        switch (claim.verdict) {
+            case ACCEPT:
+                return new Verdict(200, "success: " + rollNo + " marked present", rollNo, deviceHash, claim.sequence, true);
+            case REPEAT:
+                // Pending if the first request is still saving it: the answer waits for the same record
+                return new Verdict(200, "success: " + rollNo + " already marked", rollNo, deviceHash, claim.sequence, false);
+            default:
+                return new Verdict(409, ProxyGuard.describe(claim.verdict));
+        }
+    }
+
+    /**
+     * Waits for the records {@code verdicts} depend on and confirms their marks. Returns false
+     * if any of them isn't saved; a mark this request made is then released, with a release
+     * record so that a late write of it doesn't bring it back after a restart.
+     */
+    private boolean persist(List<Verdict> verdicts) {
+        long last = 0;
+        for (Verdict verdict : verdicts) last = Math.max(last, verdict.sequence);
+        if (last == 0) return true;
+        awaitDurable(last); // one wait for all of them: the journal syncs in order
+        boolean saved = true;
+        for (Verdict verdict : verdicts) {
+            if (verdict.sequence == 0) continue;
+            if (journal.durableCount() >= verdict.sequence) {
+                // False if the request that made it gave up first; that one answered 503 too
+                if (!registry.confirm(verdict.rollNo, verdict.deviceHash, verdict.sequence)) saved = false;
+            } else if (!verdict.accepted) {
+                saved = false; // the request that made it decides
+            } else if (registry.abandon(verdict.rollNo, verdict.deviceHash, verdict.sequence)) {
+                journal.append(new CheckIn(verdict.rollNo, verdict.deviceHash, RELEASED, System.currentTimeMillis()));
+                saved = false;
+            }
+            // else a repeat found it on disk and confirmed it in the meantime
+        }
+        return saved;
+    }
+
+    /**
+     * The apps send {@link CheckIn#deviceKey}, 16 hex digits of the device hash. Anything
+     * else (e.g. an old build sending the raw ANDROID_ID) is hashed the way the app would.
+     */
+    static long deviceHash(String devId) {
+        if (devId.length() == 16) {
+            try {
+                return Long.parseUnsignedLong(devId, 16);
+            } catch (NumberFormatException ignored) {
+                // not hex after all
+            }
+        }
+        return CheckInCodec.hashDeviceId(devId);
+    }
+
+    /** Waits up to PERSIST_TIMEOUT_MS; the caller reads the outcome from durableCount(). */
+    private void awaitDurable(long sequence) {
+        try {
+            journal.awaitDurable(sequence, PERSIST_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- HANDLERS ---
+    private void handleMark(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            Verdict verdict = settle(query.get("uid"), query.get("devId"));
+            if (!persist(Collections.singletonList(verdict))) {
+                // Not on disk, so not marked; the client retries 5xx replies
+                telemetry.increment("server.save_failed");
+                verdict = new Verdict(503, SAVE_FAILED);
+            }
+            reply(exchange, verdict.status, verdict.line + "\n");
+        } finally {
+            telemetry.recordSince("server.mark", start);
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reply(exchange, 405, "Error: POST uid\\tdevId lines\n");
+                return;
+            }
+            ArrayList<String[]> rows = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    if (rows.size() == MAX_BATCH) {
+                        reply(exchange, 413, "Error: at most " + MAX_BATCH + " check-ins per batch\n");
+                        return;
+                    }
+                    int tab = line.indexOf('\t');
+                    rows.add(tab < 0 ? new String[]{line, null} : new String[]{line.substring(0, tab), line.substring(tab + 1)});
+                }
+            }
+            telemetry.peak("server.largest_batch", rows.size());
+
+            List<Verdict> verdicts = new ArrayList<>(rows.size());
+            for (String[] row : rows) verdicts.add(settle(row[0], row[1]));
+            if (!persist(verdicts)) {
+                // Marks that did get saved stand; the retry finds them as repeats
+                telemetry.increment("server.save_failed");
+                reply(exchange, 503, SAVE_FAILED + "\n");
+                return;
+            }
+            StringBuilder body = new StringBuilder(rows.size() * 40);
+            for (Verdict verdict : verdicts) body.append(verdict.line).append('\n');
+            reply(exchange, 200, body.toString());
+        } finally {
+            telemetry.recordSince("server.batch", start);
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        telemetry.peak("server.marked", registry.size()); // only grows, so the peak is the current count
+        StringBuilder body = new StringBuilder();
+        telemetry.writeCsv(body);
+        reply(exchange, 200, body.toString());
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        HashMap<String, String> params = new HashMap<>();
+        if (rawQuery == null) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
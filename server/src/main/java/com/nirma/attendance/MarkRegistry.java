@@ -0,0 +1,176 @@
+package com.nirma.attendance;
+
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * The server's copy of {@link ProxyGuard}: who has been marked, from which device, for
+ * many request threads at once. Roll numbers and devices are spread over lock stripes; a
+ * mark locks the roll's stripe and the device's stripe (in index order, so two marks can't
+ * deadlock) and applies the same rules as the professor's phone. Requests for different
+ * students rarely share a stripe, so they don't wait on each other. The stripes are
+ * ReentrantLocks rather than monitors so waiting doesn't pin a virtual thread's carrier.
+ *
+ * A mark made with {@link #claim} stays pending until its journal record is on disk. The
+ * request that made it then either {@link #confirm}s it or, if the save timed out,
+ * {@link #abandon}s it. A repeat that arrives meanwhile gets the same journal sequence to wait
+ * on, and confirms the mark itself. A mark is never both confirmed and abandoned.
+ */
+public final class MarkRegistry {
+
+    private static final class Mark {
+        final long deviceHash;
+        final long sequence; // of its journal record; 0 if it came from the journal
+        boolean durable;
+
+        Mark(long deviceHash, long sequence, boolean durable) {
+            this.deviceHash = deviceHash;
+            this.sequence = sequence;
+            this.durable = durable;
+        }
+    }
+
+    /** A {@link #claim}'s verdict and, for a pending ACCEPT or REPEAT, the sequence to wait on. */
+    public static final class Claim {
+        public final ProxyGuard.Verdict verdict;
+        /** 0 when there is nothing to wait for. */
+        public final long sequence;
+
+        Claim(ProxyGuard.Verdict verdict, long sequence) {
+            this.verdict = verdict;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Stripe extends ReentrantLock {
+        final HashMap<String, Mark> markByRoll = new HashMap<>();
+        final HashMap<Long, String> rollByDevice = new HashMap<>();
+    }
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    /** {@code stripes} is rounded up to a power of two; a few times the core count is plenty. */
+    public MarkRegistry(int stripes) {
+        int count = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) this.stripes[i] = new Stripe();
+        this.mask = count - 1;
+    }
+
+    /**
+     * Same verdicts as {@link ProxyGuard#admit}; an ACCEPT reserves the roll and device as an
+     * already durable mark, e.g. one replayed from the journal.
+     */
+    public ProxyGuard.Verdict mark(String rollNo, long deviceHash) {
+        return claim(rollNo, deviceHash, null).verdict;
+    }
+
+    /**
+     * Like {@link #mark}, but an ACCEPT is pending: {@code record} appends it to the journal,
+     * under the lock so a repeat can't miss its sequence, and returns that sequence.
+     */
+    public Claim claim(String rollNo, long deviceHash, LongSupplier record) {
+        int roll = indexOf(rollNo.hashCode());
+        int device = indexOf(Long.hashCode(deviceHash));
+        lock(roll, device);
+        try {
+            Mark marked = stripes[roll].markByRoll.get(rollNo);
+            if (marked != null) {
+                if (marked.deviceHash != deviceHash) return new Claim(ProxyGuard.Verdict.ROLL_TAKEN, 0);
+                return new Claim(ProxyGuard.Verdict.REPEAT, marked.durable ? 0 : marked.sequence);
+            }
+            if (stripes[device].rollByDevice.containsKey(deviceHash)) {
+                return new Claim(ProxyGuard.Verdict.DEVICE_REUSED, 0);
+            }
+            long sequence = record == null ? 0 : record.getAsLong();
+            stripes[roll].markByRoll.put(rollNo, new Mark(deviceHash, sequence, record == null));
+            stripes[device].rollByDevice.put(deviceHash, rollNo);
+            return new Claim(ProxyGuard.Verdict.ACCEPT, sequence);
+        } finally {
+            unlock(roll, device);
+        }
+    }
+
+    /**
+     * Record {@code sequence} is on disk. Returns true if the mark it belongs to still stands
+     * (now confirmed), false if its request gave up on it first.
+     */
+    public boolean confirm(String rollNo, long deviceHash, long sequence) {
+        int roll = indexOf(rollNo.hashCode());
+        stripes[roll].lock();
+        try {
+            Mark marked = stripes[roll].markByRoll.get(rollNo);
+            if (marked == null || marked.deviceHash != deviceHash || marked.sequence != sequence) return false;
+            marked.durable = true;
+            return true;
+        } finally {
+            stripes[roll].unlock();
+        }
+    }
+
+    /**
+     * Record {@code sequence} didn't reach the disk in time. Releases its mark and returns
+     * true, unless a repeat already confirmed it: then the mark stands and this returns false.
+     */
+    public boolean abandon(String rollNo, long deviceHash, long sequence) {
+        int roll = indexOf(rollNo.hashCode());
+        int device = indexOf(Long.hashCode(deviceHash));
+        lock(roll, device);
+        try {
+            Mark marked = stripes[roll].markByRoll.get(rollNo);
+            if (marked == null || marked.deviceHash != deviceHash || marked.sequence != sequence) return true;
+            if (marked.durable) return false;
+            stripes[roll].markByRoll.remove(rollNo);
+            stripes[device].rollByDevice.remove(deviceHash);
+            return true;
+        } finally {
+            unlock(roll, device);
+        }
+    }
+
+    /** Undoes a mark whatever its state, e.g. when replaying a release from the journal. */
+    public void release(String rollNo, long deviceHash) {
+        int roll = indexOf(rollNo.hashCode());
+        int device = indexOf(Long.hashCode(deviceHash));
+        lock(roll, device);
+        try {
+            Mark marked = stripes[roll].markByRoll.get(rollNo);
+            if (marked != null && marked.deviceHash == deviceHash) {
+                stripes[roll].markByRoll.remove(rollNo);
+                stripes[device].rollByDevice.remove(deviceHash);
+            }
+        } finally {
+            unlock(roll, device);
+        }
+    }
+
+    /** Number of students marked. Only exact while no marks are in flight. */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+            try {
+                size += stripe.markByRoll.size();
+            } finally {
+                stripe.unlock();
+            }
+        }
+        return size;
+    }
+
+    private int indexOf(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void lock(int a, int b) {
+        stripes[Math.min(a, b)].lock();
+        if (a != b) stripes[Math.max(a, b)].lock();
+    }
+
+    private void unlock(int a, int b) {
+        if (a != b) stripes[Math.max(a, b)].unlock();
+        stripes[Math.min(a, b)].unlock();
+    }
+}
@@ -0,0 +1,205 @@
+package com.nirma.attendance;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fires a campus-sized burst of {@code /api/mark} requests at a fixed arrival rate, open
+ * loop, so a slow server shows up as latency rather than as a politely slower client.
+ * Some students resend (a lost reply) and some phones try a second roll number (a proxy),
+ * so every verdict path is exercised. Without {@code --url} it starts a server in-process
+ * on a temporary journal, which also checks that every student ended up marked once.
+ * The run fails unless it sustained at least {@code --min-rate} of the target rate (0.9 by
+ * default) with p99 latency at most {@code --max-p99} ms (500 by default).
+ *
+ * <pre>
+ *   ./gradlew :server:loadTest --args="--students 20000 --rate 5000"
+ *   ./gradlew :server:loadTest --args="--url http://192.168.1.8:8080 --students 3000 --rate 1000"
+ * </pre>
+ */
+public final class ServerLoadTest {
+
+    private ServerLoadTest() {}
+
+    private static final class Request {
+        final String uid;
+        final String devId;
+        final boolean proxy;
+
+        Request(String uid, String devId, boolean proxy) {
+            this.uid = uid;
+            this.devId = devId;
+            this.proxy = proxy;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int students = 10_000;
+        int rate = 3_000;
+        double resendRate = 0.1;
+        double proxyRate = 0.02;
+        double minRate = 0.9; // fraction of the target rate that must be achieved
+        double maxP99Millis = 500;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url": url = args[i + 1]; break;
+                case "--students": students = Integer.parseInt(args[i + 1]); break;
+                case "--rate": rate = Integer.parseInt(args[i + 1]); break;
+                case "--resend": resendRate = Double.parseDouble(args[i + 1]); break;
+                case "--proxy": proxyRate = Double.parseDouble(args[i + 1]); break;
+                case "--min-rate": minRate = Double.parseDouble(args[i + 1]); break;
+                case "--max-p99": maxP99Millis = Double.parseDouble(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        AttendanceServer local = null;
+        ExecutorService serverThreads = null;
+        File journal = null;
+        if (url == null) {
+            journal = File.createTempFile("loadtest", ".journal");
+            journal.delete();
+            serverThreads = Executors.newVirtualThreadPerTaskExecutor();
+            local = AttendanceServer.start(new InetSocketAddress("127.0.0.1", 0), journal, serverThreads);
+            url = "http://127.0.0.1:" + local.port();
+        }
+
+        ArrayList<Request> requests = plan(students, resendRate, proxyRate, new Random(1));
+        Result result = run(url, requests, rate);
+        System.out.println(result);
+
+        boolean ok = result.failed.get() == 0 && result.wrongVerdicts.get() == 0;
+        // An open-loop run that fell behind or queued up proves nothing about the target rate
+        boolean fastEnough = result.achievedRate() >= minRate * rate;
+        boolean quickEnough = result.p99Millis() <= maxP99Millis;
+        String verdict = String.format(Locale.US, "rate %.0f/s of %d/s target (need %.0f/s), p99 %.1fms (limit %.0fms)",
+                result.achievedRate(), rate, minRate * rate, result.p99Millis(), maxP99Millis);
+        ok &= fastEnough && quickEnough;
+        if (local != null) {
+            local.close();
+            serverThreads.shutdown();
+            System.out.println(local.telemetry().summary());
+            if (local.markedCount() != students) {
+                System.out.println("Expected " + students + " marked, server has " + local.markedCount());
+                ok = false;
+            }
+            journal.delete();
+        }
+        System.out.println((ok ? "PASS: " : "FAIL: ") + verdict);
+        System.exit(ok ? 0 : 1);
+    }
+
+    /** Every student once, some twice from the same phone, some phones again for another roll. */
+    private static ArrayList<Request> plan(int students, double resendRate, double proxyRate, Random random) {
+        ArrayList<Request> requests = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            String uid = String.format(Locale.US, "%02dBCE%04d", 20 + i / 10_000, i % 10_000);
+            String devId = CheckIn.deviceKey(random.nextLong());
+            requests.add(new Request(uid, devId, false));
+            if (random.nextDouble() < resendRate) requests.add(new Request(uid, devId, false));
+            if (random.nextDouble() < proxyRate) requests.add(new Request("PROXY" + i, devId, true));
+        }
+        // A proxy's request can land before the real one; only order within a pair is lost
+        Collections.shuffle(requests, random);
+        return requests;
+    }
+
+    private static final class Result {
+        final int requests;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicInteger marked = new AtomicInteger();
+        final AtomicInteger refused = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger(); // transport errors and 5xx
+        final AtomicInteger wrongVerdicts = new AtomicInteger();
+        long elapsedNanos;
+
+        Result(int requests) {
+            this.requests = requests;
+        }
+
+        double achievedRate() {
+            return requests / (elapsedNanos / 1e9);
+        }
+
+        double p99Millis() {
+            return latency.percentileMicros(99) / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format(Locale.US,
+                    "%d requests in %.2fs (%.0f/s): %d success, %d refused, %d failed, %d unexpected; "
+                            + "latency p50 %.1fms p99 %.1fms max %.1fms",
+                    requests, seconds, requests / seconds, marked.get(), refused.get(), failed.get(),
+                    wrongVerdicts.get(), latency.percentileMicros(50) / 1000.0,
+                    latency.percentileMicros(99) / 1000.0, latency.maxMicros() / 1000.0);
+        }
+    }
+
+    private static Result run(String url, ArrayList<Request> requests, int rate) throws InterruptedException {
+        Result result = new Result(requests.size());
+        ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+        // Not given senders as its executor: the client still needs one after senders shuts down
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long intervalNanos = 1_000_000_000L / Math.max(1, rate);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests.size(); i++) {
+            long wait = start + i * intervalNanos - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            Request request = requests.get(i);
+            senders.execute(() -> send(client, url, request, result));
+        }
+        senders.shutdown();
+        senders.awaitTermination(2, TimeUnit.MINUTES);
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static void send(HttpClient client, String url, Request request, Result result) {
+        URI uri = URI.create(url + "/api/mark?uid=" + URLEncoder.encode(request.uid, StandardCharsets.UTF_8)
+                + "&devId=" + URLEncoder.encode(request.devId, StandardCharsets.UTF_8));
+        long sent = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(10)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            result.latency.record((System.nanoTime() - sent) / 1000);
+            boolean success = response.statusCode() < 300 && response.body().toLowerCase(Locale.ROOT).contains("success");
+            if (response.statusCode() >= 500) {
+                result.failed.incrementAndGet();
+            } else if (success) {
+                result.marked.incrementAndGet();
+                // A proxy can win only if it got in before the real student, who is then the one refused
+            } else {
+                result.refused.incrementAndGet();
+                if (!request.proxy && response.statusCode() != 409) result.wrongVerdicts.incrementAndGet();
+            }
+        } catch (IOException e) {
+            result.failed.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
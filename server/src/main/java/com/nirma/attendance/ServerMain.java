@@ -0,0 +1,42 @@
+package com.nirma.attendance;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the attendance server on the lecture-hall laptop:
+ *
+ * <pre>
+ *   ./gradlew :server:run --args="8080 attendance.journal"
+ * </pre>
+ *
+ * Every exchange gets its own virtual thread, so a request blocked on the journal's fsync
+ * costs a few hundred bytes instead of a platform thread, and a burst from the whole
+ * campus doesn't need a tuned pool. Ctrl-C syncs and closes the journal.
+ */
+public final class ServerMain {
+
+    private ServerMain() {}
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        File journal = new File(args.length > 1 ? args[1] : "attendance.journal");
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        AttendanceServer server = AttendanceServer.start(new InetSocketAddress(port), journal, executor);
+        System.out.println("Attendance server on :" + server.port() + ", " + server.markedCount()
+                + " students restored from " + journal.getAbsolutePath());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Journal close failed: " + e);
+            }
+            executor.shutdown();
+            System.out.println(server.telemetry().summary());
+        }));
+    }
+}
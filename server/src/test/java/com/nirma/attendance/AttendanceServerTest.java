@@ -0,0 +1,146 @@
+package com.nirma.attendance;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class AttendanceServerTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private File journal;
+    private AttendanceServer server;
+    private VerificationClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        journal = new File(temp.getRoot(), "server.journal");
+        server = AttendanceServer.start(new InetSocketAddress("127.0.0.1", 0), journal, executor);
+        client = new VerificationClient.Builder("http://127.0.0.1:" + server.port(), Runnable::run)
+                .setRetries(1, 0, 0).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.shutdown();
+        server.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void verifyMatchesTheClientContract() throws Exception {
+        String devId = CheckIn.deviceKey(0xabcdL);
+        assertEquals("verified", verify("21BCE001", devId));
+        assertEquals("verified", verify("21BCE001", devId)); // a retry is still a success
+        assertTrue(verify("21BCE001", CheckIn.deviceKey(7L)).startsWith("rejected: Error"));
+        assertTrue(verify("21BCE002", devId).startsWith("rejected: Error"));
+        assertEquals(1, server.markedCount());
+    }
+
+    @Test
+    public void batchAnswersInOrder() throws Exception {
+        List<String> verdicts = client.markBatch(Arrays.asList(
+                new CheckIn("A", 1L, 0L, 0L),
+                new CheckIn("B", 2L, 0L, 0L),
+                new CheckIn("C", 1L, 0L, 0L),
+                new CheckIn("A", 1L, 0L, 0L)));
+        assertEquals(4, verdicts.size());
+        assertTrue(verdicts.get(0).startsWith("success"));
+        assertTrue(verdicts.get(1).startsWith("success"));
+        assertEquals(ProxyGuard.describe(ProxyGuard.Verdict.DEVICE_REUSED), verdicts.get(2));
+        assertTrue(verdicts.get(3).startsWith("success"));
+    }
+
+    @Test
+    public void marksSurviveARestart() throws Exception {
+        assertEquals("verified", verify("21BCE001", CheckIn.deviceKey(1L)));
+        client.shutdown();
+        server.close();
+
+        server = AttendanceServer.start(new InetSocketAddress("127.0.0.1", 0), journal, executor);
+        client = new VerificationClient.Builder("http://127.0.0.1:" + server.port(), Runnable::run)
+                .setRetries(1, 0, 0).build();
+        assertEquals(1, server.markedCount());
+        assertTrue(verify("21BCE001", CheckIn.deviceKey(2L)).startsWith("rejected"));
+    }
+
+    @Test
+    public void releasedMarksStayReleasedAfterARestart() throws Exception {
+        client.shutdown();
+        server.close();
+        // A save that timed out, then landed late, followed by its release record
+        try (AttendanceJournal appended = AttendanceJournal.open(journal)) {
+            appended.append(new CheckIn("21BCE001", 1L, 0L, 1L));
+            appended.append(new CheckIn("21BCE001", 1L, AttendanceServer.RELEASED, 2L));
+            appended.append(new CheckIn("21BCE002", 2L, 0L, 3L));
+        }
+
+        server = AttendanceServer.start(new InetSocketAddress("127.0.0.1", 0), journal, executor);
+        client = new VerificationClient.Builder("http://127.0.0.1:" + server.port(), Runnable::run)
+                .setRetries(1, 0, 0).build();
+        assertEquals(1, server.markedCount());
+        assertEquals("verified", verify("21BCE001", CheckIn.deviceKey(3L)));
+    }
+
+    @Test
+    public void missingParametersAreBadRequests() throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://127.0.0.1:" + server.port() + "/api/mark?uid=A").openConnection();
+        assertEquals(400, conn.getResponseCode());
+        try (InputStream in = conn.getErrorStream()) {
+            assertFalse(new String(in.readAllBytes(), StandardCharsets.UTF_8).contains("success"));
+        }
+    }
+
+    @Test
+    public void rawDeviceIdsAreHashedLikeTheApp() {
+        assertEquals(0xabcdL, AttendanceServer.deviceHash(CheckIn.deviceKey(0xabcdL)));
+        assertEquals(CheckInCodec.hashDeviceId("9774d56d682e549c1"), AttendanceServer.deviceHash("9774d56d682e549c1"));
+    }
+
+    private String verify(String uid, String devId) throws InterruptedException {
+        AtomicReference<String> outcome = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        client.verify(uid, devId, new VerificationClient.Callback() {
+            @Override
+            public void onVerified(String message) {
+                outcome.set("verified");
+                done.countDown();
+            }
+
+            @Override
+            public void onRejected(String message) {
+                outcome.set("rejected: " + message);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Exception error) {
+                outcome.set("error: " + error);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return outcome.get();
+    }
+}
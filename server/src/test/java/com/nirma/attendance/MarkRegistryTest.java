@@ -0,0 +1,104 @@
+package com.nirma.attendance;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+public class MarkRegistryTest {
+
+    private static final LongSupplier NOT_NEW = () -> {
+        throw new AssertionError("appended a record for a repeat");
+    };
+
+    private final MarkRegistry registry = new MarkRegistry(8);
+
+    @Test
+    public void sameRulesAsTheProfessorsPhone() {
+        assertEquals(ProxyGuard.Verdict.ACCEPT, registry.mark("A", 1L));
+        assertEquals(ProxyGuard.Verdict.REPEAT, registry.mark("A", 1L));
+        assertEquals(ProxyGuard.Verdict.ROLL_TAKEN, registry.mark("A", 2L));
+        assertEquals(ProxyGuard.Verdict.DEVICE_REUSED, registry.mark("B", 1L));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void releaseFreesRollAndDevice() {
+        registry.mark("A", 1L);
+        registry.release("A", 2L); // not the device that holds it
+        assertEquals(ProxyGuard.Verdict.REPEAT, registry.mark("A", 1L));
+        registry.release("A", 1L);
+        assertEquals(ProxyGuard.Verdict.ACCEPT, registry.mark("B", 1L));
+        assertEquals(ProxyGuard.Verdict.ACCEPT, registry.mark("A", 2L));
+    }
+
+    @Test
+    public void repeatWaitsOnThePendingRecord() {
+        MarkRegistry.Claim first = registry.claim("A", 1L, () -> 7L);
+        assertEquals(ProxyGuard.Verdict.ACCEPT, first.verdict);
+        assertEquals(7L, first.sequence);
+        MarkRegistry.Claim repeat = registry.claim("A", 1L, NOT_NEW);
+        assertEquals(ProxyGuard.Verdict.REPEAT, repeat.verdict);
+        assertEquals(7L, repeat.sequence);
+
+        // The repeat saw it on disk first; the original's late timeout must not undo it
+        assertTrue(registry.confirm("A", 1L, 7L));
+        assertFalse(registry.abandon("A", 1L, 7L));
+        assertEquals(0L, registry.claim("A", 1L, NOT_NEW).sequence);
+    }
+
+    @Test
+    public void abandonedMarkCanNotBeConfirmed() {
+        registry.claim("A", 1L, () -> 3L);
+        assertTrue(registry.abandon("A", 1L, 3L));
+        assertFalse(registry.confirm("A", 1L, 3L)); // a repeat whose wait ended after the release
+        assertEquals(0, registry.size());
+        assertEquals(ProxyGuard.Verdict.ACCEPT, registry.claim("A", 1L, () -> 4L).verdict);
+        assertFalse(registry.confirm("A", 1L, 3L)); // nor a stale one for the new mark
+    }
+
+    @Test
+    public void racingPhonesGetOneAccept() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            String roll = "R" + round;
+            AtomicInteger accepted = new AtomicInteger();
+            CountDownLatch go = new CountDownLatch(1);
+            Thread[] threads = new Thread[8];
+            for (int t = 0; t < threads.length; t++) {
+                long device = round * 100L + t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (registry.mark(roll, device) == ProxyGuard.Verdict.ACCEPT) accepted.incrementAndGet();
+                });
+                threads[t].start();
+            }
+            go.countDown();
+            for (Thread thread : threads) thread.join();
+            assertEquals(1, accepted.get());
+        }
+        assertEquals(50, registry.size());
+    }
+
+    @Test
+    public void manyThreadsManyStudents() throws Exception {
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int base = t * 1_000;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    assertEquals(ProxyGuard.Verdict.ACCEPT, registry.mark("S" + (base + i), base + i));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(8_000, registry.size());
+    }
+}
@@ -21,3 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "ProximityAttendance"
 include(":app")
+include(":core")
+include(":benchmark")
+include(":server")